@@ -30,30 +30,42 @@ import com.github.chip.emulator.core.exceptions.UnsupportedOpcodeException;
 import com.github.chip.emulator.core.opcodes.Opcode;
 import com.github.chip.emulator.core.services.AsyncEventService;
 import com.github.chip.emulator.core.services.EventService;
+import com.github.chip.emulator.debug.Debugger;
 import com.github.chip.emulator.events.ChangeColorEvent;
+import com.github.chip.emulator.events.ChangeFilterEvent;
 import com.github.chip.emulator.events.ChangeScaleEvent;
 import com.github.chip.emulator.events.ResetEvent;
+import com.github.chip.emulator.metrics.EventBusMetricsCollector;
+import com.github.chip.emulator.metrics.SessionMetrics;
+import com.github.chip.emulator.video.PixelArtScaler;
+import com.github.chip.emulator.video.ScaleFilter;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
+import javax.management.JMException;
 import java.awt.*;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.github.chip.emulator.machine.Chip8Machine.EXTENDED_HEIGHT;
+import static com.github.chip.emulator.machine.Chip8Machine.WORDS_PER_ROW;
+
 /**
  * @author helloween
  */
@@ -62,21 +74,26 @@ public class Chip8Emulator extends Application {
     private static final int DEFAULT_HEIGHT = 32;
     private static final int SCALE          = 10;
     private static final int DEFAULT_DELAY  = 1;
+    private static final int METRICS_PERIOD = 1000;
 
-    private double            scale               = SCALE;
-    private Color             pixelColor          = Color.valueOf("0x202a35");
-    private Color             backGroundColor     = Color.valueOf("0x8f9185");
-    private int               delay               = DEFAULT_DELAY;
-    private AtomicInteger     width               = new AtomicInteger(DEFAULT_WIDTH);
-    private AtomicInteger     height              = new AtomicInteger(DEFAULT_HEIGHT);
-    private ExecutorService   executorService;
-    private Future<?>         emulatorFuture;
-    private Canvas            canvas;
-    private DebugWindow       debugWindow;
-    private Stage             stage;
-    private ByteBuffer        programBuffer;
-    private ArrayList<String> programListing;
-    private volatile boolean  paused;
+    private double                   scale               = SCALE;
+    private Color                    pixelColor          = Color.valueOf("0x202a35");
+    private Color                    backGroundColor     = Color.valueOf("0x8f9185");
+    private ScaleFilter              filter              = ScaleFilter.NEAREST;
+    private int                      delay               = DEFAULT_DELAY;
+    private AtomicInteger            width               = new AtomicInteger(DEFAULT_WIDTH);
+    private AtomicInteger            height              = new AtomicInteger(DEFAULT_HEIGHT);
+    private ExecutorService          executorService;
+    private Future<?>                emulatorFuture;
+    private Canvas                   canvas;
+    private DebugWindow              debugWindow;
+    private Debugger                 debugger;
+    private Stage                    stage;
+    private ByteBuffer               programBuffer;
+    private ArrayList<String>        programListing;
+    private SessionMetrics           metrics;
+    private EventBusMetricsCollector metricsCollector;
+    private volatile boolean         paused;
 
     private CanvasRedrawTask<RefreshScreenEvent> task;
 
@@ -85,7 +102,7 @@ public class Chip8Emulator extends Application {
     }
 
     @Override
-    public void start(Stage primaryStage) throws IOException, UnsupportedOpcodeException {
+    public void start(Stage primaryStage) throws IOException, UnsupportedOpcodeException, JMException {
         final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("emulator-worker-%d")
                                                                       .setDaemon(true)
                                                                       .build();
@@ -101,7 +118,8 @@ public class Chip8Emulator extends Application {
             programListing.add(String.format("#%04X - %s %s", opcode.getRawOpcode(), opcode.getInstruction().name(), Arrays.toString(opcode.getArguments().toArray())));
         }
 
-        debugWindow = new DebugWindow(programListing);
+        debugger    = new Debugger(program);
+        debugWindow = new DebugWindow(programListing, debugger);
         rootLayout.setBottom(debugWindow);
         EmulatorMenuBar menuBar = new EmulatorMenuBar();
         rootLayout.setTop(menuBar);
@@ -116,12 +134,19 @@ public class Chip8Emulator extends Application {
 
         scene.setOnKeyPressed(new KeyEventHandler());
 
+        metrics = new SessionMetrics("gui", METRICS_PERIOD);
+        metrics.setRunLaterBacklog(PlatformQueue::getBacklog);
+        metricsCollector = new EventBusMetricsCollector(metrics, delay);
+        metrics.start();
+
         AsyncEventService.getInstance().registerHandler(this);
         EventService.getInstance().registerHandler(this);
         emulatorFuture = executorService.submit(new ProgramExecutor(programBuffer, delay));
         primaryStage.setOnCloseRequest((event) -> {
             AsyncEventService.getInstance().postEvent(new PauseEvent(false));
             AsyncEventService.getInstance().postEvent(StopEvent.INSTANCE);
+            metricsCollector.close();
+            metrics.close();
         });
     }
 
@@ -138,6 +163,7 @@ public class Chip8Emulator extends Application {
         canvas.setWidth(this.width.get() * scale);
         canvas.setHeight(this.height.get() * scale);
         stage.sizeToScene();
+        task.refresh();
     }
 
     @SuppressWarnings("unused")
@@ -147,6 +173,14 @@ public class Chip8Emulator extends Application {
             this.pixelColor = event.getColor();
         else
             this.backGroundColor = event.getColor();
+        task.refresh();
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleChangeFilterEvent(ChangeFilterEvent event) {
+        this.filter = event.getFilter();
+        task.refresh();
     }
 
     @SuppressWarnings("unused")
@@ -166,7 +200,8 @@ public class Chip8Emulator extends Application {
             this.width.getAndSet(DEFAULT_WIDTH);
             this.height.getAndSet(DEFAULT_HEIGHT);
             this.canvas             = createCanvas();
-            this.debugWindow        = new DebugWindow(programListing);
+            debugger.reset();
+            this.debugWindow        = new DebugWindow(programListing, debugger);
             BorderPane rootLayout   = (BorderPane)this.stage.getScene().getRoot();
             rootLayout.setCenter(this.canvas);
             rootLayout.setBottom(this.debugWindow);
@@ -191,7 +226,7 @@ public class Chip8Emulator extends Application {
         if (this.width.get() != (DEFAULT_WIDTH << 1)) {
             this.width.getAndAdd(this.width.get());
             this.height.getAndAdd(this.height.get());
-            Platform.runLater(() -> {
+            PlatformQueue.runLater(() -> {
                 canvas.setWidth(this.width.get() * scale);
                 canvas.setHeight(this.height.get() * scale);
                 stage.sizeToScene();
@@ -213,39 +248,85 @@ public class Chip8Emulator extends Application {
         graphicsContext.setFill(backGroundColor);
         graphicsContext.fillRect(0, 0, this.width.get() * scale, this.height.get() * scale);
         task = new CanvasRedrawTask<RefreshScreenEvent>(canvas) {
+            private final long[]   frame = new long[EXTENDED_HEIGHT * WORDS_PER_ROW];
+            private PixelArtScaler scaler;
+            private WritableImage  image;
+
+            @Override
+            public void refresh() {
+                if (scaler != null)
+                    scaler.invalidate();
+                super.refresh();
+            }
+
             @Override
             protected void redraw(GraphicsContext context, RefreshScreenEvent event) {
                 boolean[][] data = event.getScreen();
-                for (int i = 0; i < data.length; ++i) {
-                    for (int j = 0; j < data[i].length; ++j) {
-                        Color color = data[i][j] ? pixelColor : backGroundColor;
-                        context.setFill(color);
-                        context.fillRect(i * scale, j * scale, scale, scale);
-                    }
+                int screenWidth  = data.length;
+                int screenHeight = data[0].length;
+                // filters need at least one output pixel per sub-block
+                ScaleFilter activeFilter = (int) scale >= filter.getFactor() ? filter : ScaleFilter.NEAREST;
+                if (scaler == null || !scaler.matches(activeFilter, (int) scale, screenWidth, screenHeight)) {
+                    scaler = new PixelArtScaler(activeFilter, (int) scale, screenWidth, screenHeight, toArgb(pixelColor), toArgb(backGroundColor));
+                    image  = new WritableImage(scaler.getOutputWidth(), scaler.getOutputHeight());
                 }
+                scaler.setColors(toArgb(pixelColor), toArgb(backGroundColor));
+                PixelArtScaler.pack(data, frame);
+                if (!scaler.render(frame))
+                    return;
+                int outputWidth = scaler.getOutputWidth();
+                int from        = scaler.getDirtyFrom();
+                int rows        = scaler.getDirtyTo() - from;
+                image.getPixelWriter().setPixels(0, from, outputWidth, rows, PixelFormat.getIntArgbInstance(),
+                                                 scaler.getPixels(), from * outputWidth, outputWidth);
+                context.drawImage(image, 0, from, outputWidth, rows, 0, from, outputWidth, rows);
             }
         };
         return canvas;
     }
 
+    private static int toArgb(Color color) {
+        return ((int) Math.round(color.getOpacity() * 255) << 24)
+             | ((int) Math.round(color.getRed() * 255) << 16)
+             | ((int) Math.round(color.getGreen() * 255) << 8)
+             | (int) Math.round(color.getBlue() * 255);
+    }
+
     public abstract class CanvasRedrawTask<T> extends AnimationTimer {
-        private final AtomicReference<T> data = new AtomicReference<>(null);
+        private final AtomicReference<T> data    = new AtomicReference<>(null);
+        private final AtomicBoolean      refresh = new AtomicBoolean();
         private final Canvas canvas;
+        private T last;
 
         public CanvasRedrawTask(Canvas canvas) {
             this.canvas = canvas;
         }
 
         public void requestRedraw(T dataToDraw) {
-            data.set(dataToDraw);
+            if (data.getAndSet(dataToDraw) != null)
+                metrics.frameDropped();
+            start();
+        }
+
+        /**
+         * Draws the last frame again, e.g. after a setting changed while the emulator is paused;
+         * the redraw is not counted as a presented or dropped frame.
+         */
+        public void refresh() {
+            refresh.set(true);
             start();
         }
 
         @Override
         public void handle(long now) {
+            boolean refreshRequested = refresh.getAndSet(false);
             T dataToDraw = data.getAndSet(null);
             if (dataToDraw != null) {
                 redraw(canvas.getGraphicsContext2D(), dataToDraw);
+                last = dataToDraw;
+                metrics.framePresented();
+            } else if (refreshRequested && last != null) {
+                redraw(canvas.getGraphicsContext2D(), last);
             }
         }
 
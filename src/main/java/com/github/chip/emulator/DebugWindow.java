@@ -24,19 +24,24 @@ package com.github.chip.emulator;
 
 import com.github.chip.emulator.core.events.*;
 import com.github.chip.emulator.core.services.AsyncEventService;
+import com.github.chip.emulator.debug.Debugger;
+import com.github.chip.emulator.debug.RegisterCondition;
+import com.github.chip.emulator.events.BreakpointHitEvent;
 import com.google.common.eventbus.Subscribe;
 import com.sun.javafx.scene.control.skin.ListViewSkin;
 import com.sun.javafx.scene.control.skin.VirtualFlow;
-import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 
 import static com.github.chip.emulator.core.formats.Formats.INDEX_REGISTER_FORMAT;
@@ -48,6 +53,7 @@ import static com.github.chip.emulator.core.formats.Formats.REGISTER_VALUE_FORMA
  */
 public class DebugWindow extends AnchorPane {
     private static final Color BACKGROUND_COLOR = Color.valueOf("0x202a35");
+    private static final Color BREAKPOINT_COLOR = Color.FIREBRICK;
     private static final String DELIMITER_VALUE = " = ";
 
     private final Font             font;
@@ -55,9 +61,13 @@ public class DebugWindow extends AnchorPane {
     private final Label            indexRegisterValueLabel;
     private final Label            delayTimerValueLabel;
     private final Label            soundTimerValueLabel;
+    private final Label            breakpointLabel;
+    private final ListView<Armed>  armedList;
     private final ListView<String> programList;
+    private final Debugger         debugger;
 
-    public DebugWindow(List<String> programListing) {
+    public DebugWindow(List<String> programListing, Debugger debugger) {
+        this.debugger = debugger;
         GridPane registersPane = new GridPane();
         int column = 0;
         font = Font.loadFont(DebugWindow.class.getClassLoader().getResource("dfont.ttf").toExternalForm(), 10);
@@ -96,12 +106,22 @@ public class DebugWindow extends AnchorPane {
         registersPane.add(soundTimerNameLabel,  column - 3, 2);
         registersPane.add(delimiterLabel,       column - 2, 2);
         registersPane.add(soundTimerValueLabel, column - 1, 2);
+
+        breakpointLabel = createLabel("");
+        registersPane.add(breakpointLabel, 0, 0x10, column, 1);
+
+        armedList = new ListView<>();
+        armedList.setCellFactory((list) -> new ArmedCell());
+        armedList.setFocusTraversable(false);
+        armedList.setMaxHeight(80);
+        armedList.setBackground(new Background(new BackgroundFill(BACKGROUND_COLOR, CornerRadii.EMPTY, Insets.EMPTY)));
+        registersPane.add(armedList, 0, 0x11, column, 1);
+        refreshArmedList();
         getChildren().add(registersPane);
         setLeftAnchor(registersPane, 0.0);
 
         programList = new ListView<>();
         programList.setCellFactory((list) -> new ProgramRectCell());
-        programList.setMouseTransparent(true);
         programList.setFocusTraversable(false);
         programList.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
         programList.setMinWidth(350);
@@ -121,31 +141,40 @@ public class DebugWindow extends AnchorPane {
     @SuppressWarnings("unused")
     @Subscribe
     public void handleChangeRegisterValueEvent(ChangeRegisterValueEvent event) {
-        Platform.runLater(() -> registerValueLabels.get(event.getRegisterNumber()).setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
+        debugger.observeRegister(event.getRegisterNumber(), event.getValue());
+        PlatformQueue.runLater(() -> registerValueLabels.get(event.getRegisterNumber()).setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
     }
 
     @SuppressWarnings("unused")
     @Subscribe
     public void handleChangeIndexRegisterEvent(ChangeIndexRegisterValueEvent event) {
-        Platform.runLater(() -> indexRegisterValueLabel.setText(INDEX_REGISTER_FORMAT.format(event.getValue())));
+        debugger.observeIndexRegister(event.getValue());
+        PlatformQueue.runLater(() -> indexRegisterValueLabel.setText(INDEX_REGISTER_FORMAT.format(event.getValue())));
     }
 
     @SuppressWarnings("unused")
     @Subscribe
     public void handleChangeDelayTimerValueEvent(ChangeDelayTimerValueEvent event) {
-        Platform.runLater(() -> delayTimerValueLabel.setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
+        PlatformQueue.runLater(() -> delayTimerValueLabel.setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
     }
 
     @SuppressWarnings("unused")
     @Subscribe
     public void handleChangeSoundTimerValueEvent(ChangeSoundTimerValueEvent event) {
-        Platform.runLater(() -> soundTimerValueLabel.setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
+        PlatformQueue.runLater(() -> soundTimerValueLabel.setText(REGISTER_VALUE_FORMAT.format(event.getValue())));
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleBreakpointHitEvent(BreakpointHitEvent event) {
+        PlatformQueue.runLater(() -> breakpointLabel.setText(event.getReason()));
     }
 
     @SuppressWarnings("unused")
     @Subscribe
     public void handleChangeProgramCounterEvent(ChangeProgramCounterEvent event) {
-        Platform.runLater(() -> {
+        debugger.observeProgramCounter(event.getValue());
+        PlatformQueue.runLater(() -> {
             ListViewSkin<?> ts  = (ListViewSkin<?>) programList.getSkin();
             VirtualFlow<?> vf   = (VirtualFlow<?>) ts.getChildren().get(0);
             int index = event.getValue() / 2;
@@ -163,14 +192,141 @@ public class DebugWindow extends AnchorPane {
         return label;
     }
 
+    private Optional<Integer> askAddress(String title, int address) {
+        TextInputDialog dialog = new TextInputDialog(String.format("%04X", address));
+        dialog.setTitle(title);
+        dialog.setHeaderText(null);
+        dialog.setContentText("Address (hex):");
+        Optional<String> result = dialog.showAndWait();
+        if (!result.isPresent())
+            return Optional.empty();
+        try {
+            String text = result.get().trim();
+            if (text.startsWith("#"))
+                text = text.substring(1);
+            else if (text.startsWith("0x") || text.startsWith("0X"))
+                text = text.substring(2);
+            int value = Integer.parseInt(text, 16);
+            if (value < 0 || value >= Debugger.MEMORY_SIZE)
+                throw new IllegalArgumentException(String.format("Address #%04X is out of range", value));
+            return Optional.of(value);
+        } catch (IllegalArgumentException e) {
+            showError(e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void askCondition() {
+        TextInputDialog dialog = new TextInputDialog("V0 == 0x00");
+        dialog.setTitle("Break on register");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Condition:");
+        dialog.showAndWait().ifPresent((text) -> {
+            try {
+                debugger.addCondition(RegisterCondition.parse(text));
+                refreshArmedList();
+            } catch (IllegalArgumentException e) {
+                showError(e.getMessage());
+            }
+        });
+    }
+
+    private void refreshArmedList() {
+        List<Armed> items = new ArrayList<>();
+        for (int address : debugger.getBreakpoints())
+            items.add(new Armed(String.format("Break at #%04X", address), () -> debugger.removeBreakpoint(address)));
+        for (int address : debugger.getReadWatchpoints())
+            items.add(new Armed(String.format("Read of #%04X", address), () -> debugger.removeReadWatchpoint(address)));
+        for (int address : debugger.getWriteWatchpoints())
+            items.add(new Armed(String.format("Write of #%04X", address), () -> debugger.removeWriteWatchpoint(address)));
+        for (RegisterCondition condition : debugger.getConditions())
+            items.add(new Armed("Break when " + condition, () -> debugger.removeCondition(condition)));
+        armedList.setItems(FXCollections.observableArrayList(items));
+    }
+
+    private void removeArmed(Armed armed) {
+        armed.remove.run();
+        refreshArmedList();
+        programList.refresh();
+    }
+
+    private void showError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR, message);
+        alert.setHeaderText(null);
+        alert.showAndWait();
+    }
+
+    private static class Armed {
+        private final String   text;
+        private final Runnable remove;
+
+        Armed(String text, Runnable remove) {
+            this.text   = text;
+            this.remove = remove;
+        }
+    }
+
+    private class ArmedCell extends ListCell<Armed> {
+        ArmedCell() {
+            addEventFilter(MouseEvent.MOUSE_PRESSED, (event) -> {
+                if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2 && getItem() != null)
+                    removeArmed(getItem());
+            });
+            MenuItem removeItem = new MenuItem("Remove");
+            removeItem.setOnAction((event) -> {
+                if (getItem() != null)
+                    removeArmed(getItem());
+            });
+            setContextMenu(new ContextMenu(removeItem));
+        }
+
+        @Override
+        public void updateItem(Armed item, boolean empty) {
+            super.updateItem(item, empty);
+            setText(empty || item == null ? null : item.text);
+            setFont(font);
+            setTextFill(Color.WHITE);
+            setBackground(new Background(new BackgroundFill(BACKGROUND_COLOR, CornerRadii.EMPTY, Insets.EMPTY)));
+        }
+    }
+
     private class ProgramRectCell extends ListCell<String> {
+        ProgramRectCell() {
+            // selection follows the program counter, so clicks must not move it
+            addEventFilter(MouseEvent.MOUSE_PRESSED, (event) -> {
+                if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2 && !isEmpty())
+                    toggleBreakpoint();
+                event.consume();
+            });
+
+            MenuItem breakpointItem = new MenuItem("Toggle breakpoint");
+            breakpointItem.setOnAction((event) -> toggleBreakpoint());
+            MenuItem readItem = new MenuItem("Watch memory reads...");
+            readItem.setOnAction((event) -> askAddress("Watch memory reads", getAddress()).ifPresent((address) -> {
+                debugger.addReadWatchpoint(address);
+                refreshArmedList();
+            }));
+            MenuItem writeItem = new MenuItem("Watch memory writes...");
+            writeItem.setOnAction((event) -> askAddress("Watch memory writes", getAddress()).ifPresent((address) -> {
+                debugger.addWriteWatchpoint(address);
+                refreshArmedList();
+            }));
+            MenuItem conditionItem = new MenuItem("Break on register...");
+            conditionItem.setOnAction((event) -> askCondition());
+            MenuItem clearItem = new MenuItem("Clear all breakpoints");
+            clearItem.setOnAction((event) -> {
+                debugger.clearAll();
+                breakpointLabel.setText("");
+                programList.refresh();
+                refreshArmedList();
+            });
+            setContextMenu(new ContextMenu(breakpointItem, readItem, writeItem, conditionItem, new SeparatorMenuItem(), clearItem));
+        }
+
         @Override
         public void updateSelected(boolean selected) {
             super.updateSelected(selected);
-            if (selected)
-                setBackground(new Background(new BackgroundFill(Color.ROYALBLUE, CornerRadii.EMPTY, Insets.EMPTY)));
-            else
-                setBackground(new Background(new BackgroundFill(BACKGROUND_COLOR, CornerRadii.EMPTY, Insets.EMPTY)));
+            updateBackground();
         }
 
         @Override
@@ -179,7 +335,26 @@ public class DebugWindow extends AnchorPane {
             setText(item);
             setFont(font);
             setTextFill(Color.WHITE);
-            setBackground(new Background(new BackgroundFill(BACKGROUND_COLOR, CornerRadii.EMPTY, Insets.EMPTY)));
+            updateBackground();
+        }
+
+        private int getAddress() {
+            return Math.max(getIndex(), 0) * 2;
+        }
+
+        private void toggleBreakpoint() {
+            debugger.toggleBreakpoint(getAddress());
+            updateBackground();
+            refreshArmedList();
+        }
+
+        private void updateBackground() {
+            Color color = BACKGROUND_COLOR;
+            if (isSelected())
+                color = Color.ROYALBLUE;
+            else if (!isEmpty() && debugger.hasBreakpoint(getAddress()))
+                color = BREAKPOINT_COLOR;
+            setBackground(new Background(new BackgroundFill(color, CornerRadii.EMPTY, Insets.EMPTY)));
         }
     }
 }
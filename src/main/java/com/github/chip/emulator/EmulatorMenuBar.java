@@ -27,8 +27,10 @@ import com.github.chip.emulator.core.events.SetDelayEvent;
 import com.github.chip.emulator.core.services.AsyncEventService;
 import com.github.chip.emulator.core.services.EventService;
 import com.github.chip.emulator.events.ChangeColorEvent;
+import com.github.chip.emulator.events.ChangeFilterEvent;
 import com.github.chip.emulator.events.ChangeScaleEvent;
 import com.github.chip.emulator.events.ResetEvent;
+import com.github.chip.emulator.video.ScaleFilter;
 import com.google.common.eventbus.Subscribe;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.control.CheckMenuItem;
@@ -85,6 +87,13 @@ public class EmulatorMenuBar extends MenuBar {
         scale.getItems().add(x10);
         scale.getItems().add(x20);
         video.getItems().add(scale);
+        Menu filter = new Menu("Filter");
+        for (ScaleFilter scaleFilter : ScaleFilter.values()) {
+            MenuItem filterItem = new MenuItem(scaleFilter.getTitle());
+            filterItem.setOnAction((event) -> EventService.getInstance().postEvent(new ChangeFilterEvent(scaleFilter)));
+            filter.getItems().add(filterItem);
+        }
+        video.getItems().add(filter);
         List<String> colorList = new ArrayList<>();
         final Field[] fields = Color.class.getFields();
         for (final Field field : fields) {
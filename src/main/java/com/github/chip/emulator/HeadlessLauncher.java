@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator;
+
+import com.github.chip.emulator.machine.Chip8Machine;
+import com.github.chip.emulator.metrics.MetricsCsvWriter;
+import com.github.chip.emulator.metrics.SessionMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a program without UI and publishes the session metrics over JMX, optionally dumping them as CSV.
+ * <p>
+ * Usage: {@code HeadlessLauncher <program> [instructionsPerSecond] [csvFile] [periodMillis] [durationSeconds]};
+ * zero instructions per second runs unthrottled, zero duration runs until the program exits.
+ *
+ * @author helloween
+ */
+public class HeadlessLauncher {
+    private static final int  DEFAULT_IPS    = 1000;
+    private static final long DEFAULT_PERIOD = 1000;
+    private static final int  MAX_BATCH      = 10000;
+    private static final long IDLE_NANOS     = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: HeadlessLauncher <program> [instructionsPerSecond] [csvFile] [periodMillis] [durationSeconds]");
+            System.exit(1);
+        }
+        Path program         = Paths.get(args[0]);
+        int  ips             = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_IPS;
+        Path csvFile         = args.length > 2 && !args[2].isEmpty() ? Paths.get(args[2]) : null;
+        long period          = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_PERIOD;
+        long durationSeconds = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        Chip8Machine machine = new Chip8Machine(ByteBuffer.wrap(Files.readAllBytes(program)));
+        // the writer is declared first so that the sampler is stopped before the writer is closed
+        try (MetricsCsvWriter csvWriter = csvFile != null ? new MetricsCsvWriter(csvFile) : null;
+             SessionMetrics metrics = new SessionMetrics("headless", period)) {
+            if (ips > 0)
+                metrics.setInstructionPeriodNanos(TimeUnit.SECONDS.toNanos(1) / ips);
+            if (csvWriter != null)
+                metrics.addSampleListener(csvWriter);
+            metrics.start();
+            run(machine, metrics, ips, durationSeconds);
+        }
+    }
+
+    private static void run(Chip8Machine machine, SessionMetrics metrics, int ips, long durationSeconds) {
+        long start    = System.nanoTime();
+        long deadline = durationSeconds > 0 ? start + TimeUnit.SECONDS.toNanos(durationSeconds) : Long.MAX_VALUE;
+        long executed = 0;
+        long now      = start;
+        while (!machine.isHalted() && now < deadline) {
+            int batch = MAX_BATCH;
+            if (ips > 0) {
+                long due = (long) ((now - start) / 1e9 * ips);
+                batch    = (int) Math.min(due - executed, MAX_BATCH);
+                if (batch <= 0) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    now = System.nanoTime();
+                    continue;
+                }
+            }
+            int count = machine.step(batch);
+            executed += count;
+            metrics.instructionsExecuted(count);
+            now = System.nanoTime();
+        }
+    }
+}
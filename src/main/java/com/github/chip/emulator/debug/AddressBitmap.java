@@ -0,0 +1,135 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.debug;
+
+import java.util.Arrays;
+
+/**
+ * Address set backed by a bitmap with a per-page summary mask, so that range lookups
+ * only touch the words of pages which actually contain marked addresses.
+ *
+ * @author helloween
+ */
+public class AddressBitmap {
+    private static final int PAGE_BITS      = 8;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) >> 6;
+
+    private final int    size;
+    private final long[] words;
+    private long         pages;
+
+    public AddressBitmap(int size) {
+        if (size <= 0 || size > (Long.SIZE << PAGE_BITS) || (size & ((1 << PAGE_BITS) - 1)) != 0)
+            throw new IllegalArgumentException("Unsupported bitmap size: " + size);
+        this.size  = size;
+        this.words = new long[size >> 6];
+    }
+
+    public boolean contains(int address) {
+        if (address < 0 || address >= size)
+            return false;
+        return (pages & (1L << (address >> PAGE_BITS))) != 0 && (words[address >> 6] & (1L << address)) != 0;
+    }
+
+    /**
+     * @return true if any address of [from, to) is marked
+     */
+    public boolean intersects(int from, int to) {
+        from = Math.max(from, 0);
+        to   = Math.min(to, size);
+        if (from >= to || pages == 0)
+            return false;
+        int firstPage = from >> PAGE_BITS;
+        int lastPage  = (to - 1) >> PAGE_BITS;
+        long pageMask = (lastPage - firstPage == Long.SIZE - 1) ? -1L : ((1L << (lastPage - firstPage + 1)) - 1) << firstPage;
+        if ((pages & pageMask) == 0)
+            return false;
+        int firstWord = from >> 6;
+        int lastWord  = (to - 1) >> 6;
+        for (int i = firstWord; i <= lastWord; ++i) {
+            long mask = -1L;
+            if (i == firstWord)
+                mask &= -1L << from;
+            if (i == lastWord)
+                mask &= -1L >>> (63 - ((to - 1) & 0x3F));
+            if ((words[i] & mask) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the first marked address at or after {@code from}, -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        for (int word = Math.max(from, 0) >> 6; word < words.length; ++word) {
+            long bits = words[word];
+            if (word == from >> 6)
+                bits &= -1L << from;
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    public void set(int address) {
+        checkAddress(address);
+        words[address >> 6] |= 1L << address;
+        pages |= 1L << (address >> PAGE_BITS);
+    }
+
+    public void clear(int address) {
+        checkAddress(address);
+        words[address >> 6] &= ~(1L << address);
+        int page = address >> PAGE_BITS;
+        int from = page * WORDS_PER_PAGE;
+        for (int i = from; i < from + WORDS_PER_PAGE; ++i) {
+            if (words[i] != 0)
+                return;
+        }
+        pages &= ~(1L << page);
+    }
+
+    public boolean toggle(int address) {
+        if (contains(address)) {
+            clear(address);
+            return false;
+        }
+        set(address);
+        return true;
+    }
+
+    public void clearAll() {
+        Arrays.fill(words, 0L);
+        pages = 0;
+    }
+
+    public boolean isEmpty() {
+        return pages == 0;
+    }
+
+    private void checkAddress(int address) {
+        if (address < 0 || address >= size)
+            throw new IllegalArgumentException(String.format("Address #%04X is out of range", address));
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.debug;
+
+import com.github.chip.emulator.core.events.ChangeProgramCounterEvent;
+import com.github.chip.emulator.core.events.ChangeRegisterValueEvent;
+import com.github.chip.emulator.core.events.NextStepEvent;
+import com.github.chip.emulator.core.events.PauseEvent;
+import com.github.chip.emulator.core.opcodes.Opcode;
+import com.github.chip.emulator.core.services.AsyncEventService;
+import com.github.chip.emulator.events.BreakpointHitEvent;
+import com.google.common.eventbus.Subscribe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PC breakpoints, memory read/write watchpoints and register conditions.
+ * Subscribed to the event service only while something is armed; machine state is fed by
+ * {@link com.github.chip.emulator.DebugWindow} on every run.
+ *
+ * @author helloween
+ */
+public class Debugger {
+    public static final int MEMORY_SIZE = 0x1000;
+
+    private static final int PC_ARMED        = 1;
+    private static final int READ_ARMED      = 1 << 1;
+    private static final int WRITE_ARMED     = 1 << 2;
+    private static final int CONDITION_ARMED = 1 << 3;
+    private static final int UNKNOWN         = -1;
+
+    private final List<Opcode>             program;
+    private final AddressBitmap            breakpoints      = new AddressBitmap(MEMORY_SIZE);
+    private final AddressBitmap            readWatchpoints  = new AddressBitmap(MEMORY_SIZE);
+    private final AddressBitmap            writeWatchpoints = new AddressBitmap(MEMORY_SIZE);
+    private final List<RegisterCondition>  conditions       = new ArrayList<>();
+    private final short[]                  memory           = new short[MEMORY_SIZE];
+    private final int[]                    registers        = new int[0x10];
+    private volatile RegisterCondition[][] conditionTable   = new RegisterCondition[0x10][0];
+    private volatile int                   armed;
+    private int                            indexRegister;
+    private volatile String                hitReason;
+    private int                            overshoot;
+
+    public Debugger(List<Opcode> program) {
+        this.program = program;
+        reset();
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleChangeProgramCounterEvent(ChangeProgramCounterEvent event) {
+        int pc = event.getValue();
+        String reason = hitReason;
+        if (reason != null) {
+            ++overshoot;
+            AsyncEventService.getInstance().postEvent(new BreakpointHitEvent(
+                    String.format("%s, stopped %d instruction(s) later at #%04X", reason, overshoot, pc)));
+        } else if ((armed & PC_ARMED) != 0 && breakpoints.contains(pc)) {
+            hit(String.format("Breakpoint at #%04X", pc));
+        } else if ((armed & (READ_ARMED | WRITE_ARMED)) != 0) {
+            checkMemoryAccess(pc);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleChangeRegisterValueEvent(ChangeRegisterValueEvent event) {
+        if ((armed & CONDITION_ARMED) == 0 || hitReason != null)
+            return;
+        for (RegisterCondition condition : conditionTable[event.getRegisterNumber()]) {
+            if (condition.test(event.getValue())) {
+                hit("Condition " + condition);
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handlePauseEvent(PauseEvent event) {
+        if (!event.isPauseFlag())
+            hitReason = null;
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleNextStepEvent(NextStepEvent event) {
+        hitReason = null;
+    }
+
+    /**
+     * Restores the power-on state of the program, e.g. after it has been reloaded.
+     */
+    public synchronized void reset() {
+        Arrays.fill(memory, (short) UNKNOWN);
+        for (int i = 0; i < program.size() && i * 2 + 1 < MEMORY_SIZE; ++i) {
+            int opcode = program.get(i).getRawOpcode() & 0xFFFF;
+            memory[i * 2]     = (short) (opcode >> 8);
+            memory[i * 2 + 1] = (short) (opcode & 0xFF);
+        }
+        Arrays.fill(registers, 0);
+        indexRegister = 0;
+        hitReason     = null;
+    }
+
+    public void observeRegister(int number, int value) {
+        registers[number] = value;
+    }
+
+    public void observeIndexRegister(int value) {
+        indexRegister = value;
+    }
+
+    /**
+     * Applies the FX33/FX55 writes of the instruction at {@code pc} to the shadow memory,
+     * so that self-modifying code is decoded from its current bytes.
+     */
+    public void observeProgramCounter(int pc) {
+        int opcode = opcodeAt(pc);
+        if (opcode < 0 || (opcode & 0xF000) != 0xF000)
+            return;
+        int x    = (opcode >> 8) & 0xF;
+        int from = indexRegister;
+        switch (opcode & 0xFF) {
+            case 0x33:
+                store(from,     registers[x] / 100);
+                store(from + 1, registers[x] / 10 % 10);
+                store(from + 2, registers[x] % 10);
+                break;
+            case 0x55:
+                for (int i = 0; i <= x; ++i)
+                    store(from + i, registers[i]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public synchronized boolean toggleBreakpoint(int address) {
+        boolean result = breakpoints.toggle(address);
+        updateArmed();
+        return result;
+    }
+
+    public boolean hasBreakpoint(int address) {
+        return breakpoints.contains(address);
+    }
+
+    public synchronized void removeBreakpoint(int address) {
+        breakpoints.clear(address);
+        updateArmed();
+    }
+
+    public synchronized List<Integer> getBreakpoints() {
+        return addresses(breakpoints);
+    }
+
+    public synchronized void addReadWatchpoint(int address) {
+        readWatchpoints.set(address);
+        updateArmed();
+    }
+
+    public synchronized void removeReadWatchpoint(int address) {
+        readWatchpoints.clear(address);
+        updateArmed();
+    }
+
+    public synchronized List<Integer> getReadWatchpoints() {
+        return addresses(readWatchpoints);
+    }
+
+    public synchronized void addWriteWatchpoint(int address) {
+        writeWatchpoints.set(address);
+        updateArmed();
+    }
+
+    public synchronized void removeWriteWatchpoint(int address) {
+        writeWatchpoints.clear(address);
+        updateArmed();
+    }
+
+    public synchronized List<Integer> getWriteWatchpoints() {
+        return addresses(writeWatchpoints);
+    }
+
+    public synchronized void addCondition(RegisterCondition condition) {
+        conditions.add(condition);
+        rebuildConditionTable();
+        updateArmed();
+    }
+
+    public synchronized void removeCondition(RegisterCondition condition) {
+        conditions.remove(condition);
+        rebuildConditionTable();
+        updateArmed();
+    }
+
+    public synchronized List<RegisterCondition> getConditions() {
+        return Collections.unmodifiableList(new ArrayList<>(conditions));
+    }
+
+    public synchronized void clearAll() {
+        breakpoints.clearAll();
+        readWatchpoints.clearAll();
+        writeWatchpoints.clearAll();
+        conditions.clear();
+        rebuildConditionTable();
+        updateArmed();
+    }
+
+    private void checkMemoryAccess(int pc) {
+        int opcode = opcodeAt(pc);
+        if (opcode < 0)
+            return;
+        int x    = (opcode >> 8) & 0xF;
+        int from = indexRegister;
+        switch (opcode & 0xF000) {
+            case 0xD000:
+                int n = opcode & 0xF;
+                checkRange(READ_ARMED, from, from + (n == 0 ? 32 : n), pc);
+                break;
+            case 0xF000:
+                switch (opcode & 0xFF) {
+                    case 0x33:
+                        checkRange(WRITE_ARMED, from, from + 3, pc);
+                        break;
+                    case 0x55:
+                        checkRange(WRITE_ARMED, from, from + x + 1, pc);
+                        break;
+                    case 0x65:
+                        checkRange(READ_ARMED, from, from + x + 1, pc);
+                        break;
+                    default:
+                        break;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int opcodeAt(int pc) {
+        if (pc < 0 || pc + 1 >= MEMORY_SIZE || memory[pc] == UNKNOWN || memory[pc + 1] == UNKNOWN)
+            return -1;
+        return (memory[pc] << 8) | memory[pc + 1];
+    }
+
+    private void store(int address, int value) {
+        if (address >= 0 && address < MEMORY_SIZE)
+            memory[address] = (short) value;
+    }
+
+    private void checkRange(int kind, int from, int to, int pc) {
+        if ((armed & kind) == 0 || hitReason != null)
+            return;
+        if (kind == READ_ARMED && readWatchpoints.intersects(from, to))
+            hit(String.format("Read of #%04X-#%04X at #%04X", from, to - 1, pc));
+        else if (kind == WRITE_ARMED && writeWatchpoints.intersects(from, to))
+            hit(String.format("Write of #%04X-#%04X at #%04X", from, to - 1, pc));
+    }
+
+    private void hit(String reason) {
+        hitReason = reason;
+        overshoot = 0;
+        AsyncEventService.getInstance().postEvent(new PauseEvent(true));
+        AsyncEventService.getInstance().postEvent(new BreakpointHitEvent(reason));
+    }
+
+    private void rebuildConditionTable() {
+        List<List<RegisterCondition>> byRegister = new ArrayList<>();
+        for (int i = 0; i <= 0xF; ++i)
+            byRegister.add(new ArrayList<>());
+        for (RegisterCondition condition : conditions)
+            byRegister.get(condition.getRegisterNumber()).add(condition);
+        RegisterCondition[][] table = new RegisterCondition[0x10][];
+        for (int i = 0; i <= 0xF; ++i)
+            table[i] = byRegister.get(i).toArray(new RegisterCondition[0]);
+        conditionTable = table;
+    }
+
+    private void updateArmed() {
+        int mask = 0;
+        if (!breakpoints.isEmpty())
+            mask |= PC_ARMED;
+        if (!readWatchpoints.isEmpty())
+            mask |= READ_ARMED;
+        if (!writeWatchpoints.isEmpty())
+            mask |= WRITE_ARMED;
+        if (!conditions.isEmpty())
+            mask |= CONDITION_ARMED;
+        int previous = armed;
+        armed = mask;
+        if (previous == 0 && mask != 0) {
+            hitReason = null;
+            AsyncEventService.getInstance().registerHandler(this);
+        } else if (previous != 0 && mask == 0) {
+            AsyncEventService.getInstance().unregisterHandler(this);
+            hitReason = null;
+        }
+    }
+
+    private static List<Integer> addresses(AddressBitmap bitmap) {
+        List<Integer> result = new ArrayList<>();
+        for (int address = bitmap.nextSetBit(0); address >= 0; address = bitmap.nextSetBit(address + 1))
+            result.add(address);
+        return result;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.debug;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Break condition on a general purpose register value, e.g. {@code V3 == 0x10}.
+ *
+ * @author helloween
+ */
+public class RegisterCondition {
+    private static final Pattern CONDITION_PATTERN =
+            Pattern.compile("\\s*[vV]([0-9a-fA-F])\\s*(==|!=|<=|>=|<|>)\\s*(0[xX][0-9a-fA-F]+|#[0-9a-fA-F]+|\\d+)\\s*");
+
+    public enum Operator {
+        EQ("==") {
+            @Override
+            public boolean test(int left, int right) {
+                return left == right;
+            }
+        },
+        NE("!=") {
+            @Override
+            public boolean test(int left, int right) {
+                return left != right;
+            }
+        },
+        LT("<") {
+            @Override
+            public boolean test(int left, int right) {
+                return left < right;
+            }
+        },
+        LE("<=") {
+            @Override
+            public boolean test(int left, int right) {
+                return left <= right;
+            }
+        },
+        GT(">") {
+            @Override
+            public boolean test(int left, int right) {
+                return left > right;
+            }
+        },
+        GE(">=") {
+            @Override
+            public boolean test(int left, int right) {
+                return left >= right;
+            }
+        };
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public abstract boolean test(int left, int right);
+
+        public static Operator fromSymbol(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol))
+                    return operator;
+            }
+            throw new IllegalArgumentException("Unknown operator: " + symbol);
+        }
+    }
+
+    private final int      registerNumber;
+    private final Operator operator;
+    private final int      value;
+
+    public RegisterCondition(int registerNumber, Operator operator, int value) {
+        if (registerNumber < 0 || registerNumber > 0xF)
+            throw new IllegalArgumentException("Unknown register: " + registerNumber);
+        if (value < 0 || value > 0xFF)
+            throw new IllegalArgumentException("Register value is out of range: " + value);
+        this.registerNumber = registerNumber;
+        this.operator       = operator;
+        this.value          = value;
+    }
+
+    public static RegisterCondition parse(String expression) {
+        Matcher matcher = CONDITION_PATTERN.matcher(expression);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Invalid condition: " + expression);
+        String literal = matcher.group(3);
+        int value;
+        if (literal.startsWith("#"))
+            value = Integer.parseInt(literal.substring(1), 16);
+        else if (literal.length() > 1 && (literal.charAt(1) == 'x' || literal.charAt(1) == 'X'))
+            value = Integer.parseInt(literal.substring(2), 16);
+        else
+            value = Integer.parseInt(literal);
+        return new RegisterCondition(Integer.parseInt(matcher.group(1), 16), Operator.fromSymbol(matcher.group(2)), value);
+    }
+
+    public boolean test(int registerValue) {
+        return operator.test(registerValue, value);
+    }
+
+    public int getRegisterNumber() {
+        return registerNumber;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("V%X %s #%02X", registerNumber, operator.symbol, value);
+    }
+}
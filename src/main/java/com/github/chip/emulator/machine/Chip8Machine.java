@@ -0,0 +1,527 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Embeddable CHIP-8/SCHIP interpreter without event bus or UI dependencies.
+ * A machine is not thread-safe, but {@link #fork()} is cheap enough to give every
+ * worker thread its own copy: memory pages are shared copy-on-write and the rest
+ * of the state is a few hundred bytes.
+ * <p>
+ * Timers tick once every {@link #getCyclesPerFrame()} instructions, so a run is a pure
+ * function of the program, the seed and the key input. SYS (0NNN) is ignored, as on most
+ * interpreters; any other unknown opcode throws {@link IllegalStateException} and leaves the
+ * program counter on the offending instruction.
+ *
+ * @author helloween
+ */
+public class Chip8Machine {
+    public static final int PROGRAM_START            = 0x200;
+    public static final int DEFAULT_WIDTH            = 64;
+    public static final int DEFAULT_HEIGHT           = 32;
+    public static final int EXTENDED_WIDTH           = DEFAULT_WIDTH << 1;
+    public static final int EXTENDED_HEIGHT          = DEFAULT_HEIGHT << 1;
+    public static final int WORDS_PER_ROW            = EXTENDED_WIDTH / Long.SIZE;
+    public static final int DEFAULT_CYCLES_PER_FRAME = 10;
+
+    private static final int FONT_ADDRESS     = 0x000;
+    private static final int BIG_FONT_ADDRESS = 0x050;
+    private static final int STACK_SIZE       = 0x10;
+
+    private static final int[] FONT = {
+            0xF0, 0x90, 0x90, 0x90, 0xF0, 0x20, 0x60, 0x20, 0x20, 0x70,
+            0xF0, 0x10, 0xF0, 0x80, 0xF0, 0xF0, 0x10, 0xF0, 0x10, 0xF0,
+            0x90, 0x90, 0xF0, 0x10, 0x10, 0xF0, 0x80, 0xF0, 0x10, 0xF0,
+            0xF0, 0x80, 0xF0, 0x90, 0xF0, 0xF0, 0x10, 0x20, 0x40, 0x40,
+            0xF0, 0x90, 0xF0, 0x90, 0xF0, 0xF0, 0x90, 0xF0, 0x10, 0xF0,
+            0xF0, 0x90, 0xF0, 0x90, 0x90, 0xE0, 0x90, 0xE0, 0x90, 0xE0,
+            0xF0, 0x80, 0x80, 0x80, 0xF0, 0xE0, 0x90, 0x90, 0x90, 0xE0,
+            0xF0, 0x80, 0xF0, 0x80, 0xF0, 0xF0, 0x80, 0xF0, 0x80, 0x80
+    };
+
+    private static final int[] BIG_FONT = {
+            0x3C, 0x7E, 0xE7, 0xC3, 0xC3, 0xC3, 0xC3, 0xE7, 0x7E, 0x3C,
+            0x18, 0x38, 0x58, 0x18, 0x18, 0x18, 0x18, 0x18, 0x18, 0x3C,
+            0x3E, 0x7F, 0xC3, 0x06, 0x0C, 0x18, 0x30, 0x60, 0xFF, 0xFF,
+            0x3C, 0x7E, 0xC3, 0x03, 0x0E, 0x0E, 0x03, 0xC3, 0x7E, 0x3C,
+            0x06, 0x0E, 0x1E, 0x36, 0x66, 0xC6, 0xFF, 0xFF, 0x06, 0x06,
+            0xFF, 0xFF, 0xC0, 0xC0, 0xFC, 0xFE, 0x03, 0xC3, 0x7E, 0x3C,
+            0x3E, 0x7C, 0xC0, 0xC0, 0xFC, 0xFE, 0xC3, 0xC3, 0x7E, 0x3C,
+            0xFF, 0xFF, 0x03, 0x06, 0x0C, 0x18, 0x30, 0x60, 0x60, 0x60,
+            0x3C, 0x7E, 0xC3, 0xC3, 0x7E, 0x7E, 0xC3, 0xC3, 0x7E, 0x3C,
+            0x3C, 0x7E, 0xC3, 0xC3, 0x7F, 0x3F, 0x03, 0x03, 0x3E, 0x7C
+    };
+
+    private final PagedMemory memory;
+    private final int[]       registers;
+    private final int[]       stack;
+    private final int[]       flags;
+    private final long[]      screen;
+    private int               stackPointer;
+    private int               programCounter;
+    private int               indexRegister;
+    private int               delayTimer;
+    private int               soundTimer;
+    private int               keys;
+    private boolean           extendedScreen;
+    private boolean           halted;
+    private long              randomState;
+    private int               cyclesPerFrame;
+    private int               frameCycle;
+    private long              instructionCount;
+
+    public Chip8Machine(ByteBuffer program) {
+        this(program, System.nanoTime());
+    }
+
+    public Chip8Machine(ByteBuffer program, long seed) {
+        memory    = new PagedMemory();
+        registers = new int[0x10];
+        stack     = new int[STACK_SIZE];
+        flags     = new int[8];
+        screen    = new long[EXTENDED_HEIGHT * WORDS_PER_ROW];
+        for (int i = 0; i < FONT.length; ++i)
+            memory.write(FONT_ADDRESS + i, FONT[i]);
+        for (int i = 0; i < BIG_FONT.length; ++i)
+            memory.write(BIG_FONT_ADDRESS + i, BIG_FONT[i]);
+        ByteBuffer buffer = program.duplicate();
+        buffer.rewind();
+        if (buffer.remaining() > PagedMemory.SIZE - PROGRAM_START)
+            throw new IllegalArgumentException("Program is too large: " + buffer.remaining() + " bytes");
+        for (int address = PROGRAM_START; buffer.hasRemaining(); ++address)
+            memory.write(address, buffer.get());
+        programCounter = PROGRAM_START;
+        cyclesPerFrame = DEFAULT_CYCLES_PER_FRAME;
+        randomState    = seed == 0 ? 1 : seed;
+    }
+
+    private Chip8Machine(Chip8Machine source) {
+        memory           = source.memory.fork();
+        registers        = source.registers.clone();
+        stack            = source.stack.clone();
+        flags            = source.flags.clone();
+        screen           = source.screen.clone();
+        stackPointer     = source.stackPointer;
+        programCounter   = source.programCounter;
+        indexRegister    = source.indexRegister;
+        delayTimer       = source.delayTimer;
+        soundTimer       = source.soundTimer;
+        keys             = source.keys;
+        extendedScreen   = source.extendedScreen;
+        halted           = source.halted;
+        randomState      = source.randomState;
+        cyclesPerFrame   = source.cyclesPerFrame;
+        frameCycle       = source.frameCycle;
+        instructionCount = source.instructionCount;
+    }
+
+    /**
+     * Must be called from the thread which owns this machine; the returned copy may
+     * then be handed to any other thread.
+     */
+    public Chip8Machine fork() {
+        return new Chip8Machine(this);
+    }
+
+    /**
+     * @return number of instructions actually executed, less than {@code count} if the program exited
+     */
+    public int step(int count) {
+        int executed = 0;
+        try {
+            while (executed < count && !halted) {
+                int address = programCounter;
+                try {
+                    execute();
+                } catch (IllegalStateException e) {
+                    programCounter = address;
+                    throw e;
+                }
+                ++executed;
+                if (++frameCycle >= cyclesPerFrame) {
+                    frameCycle = 0;
+                    if (delayTimer > 0)
+                        --delayTimer;
+                    if (soundTimer > 0)
+                        --soundTimer;
+                }
+            }
+        } finally {
+            instructionCount += executed;
+        }
+        return executed;
+    }
+
+    public void setKeys(int keyMask) {
+        this.keys = keyMask & 0xFFFF;
+    }
+
+    public void setKey(int key, boolean pressed) {
+        if (key < 0 || key > 0xF)
+            throw new IllegalArgumentException("Unknown key: " + key);
+        if (pressed)
+            keys |= 1 << key;
+        else
+            keys &= ~(1 << key);
+    }
+
+    public int getKeys() {
+        return keys;
+    }
+
+    /**
+     * Copies the packed framebuffer into {@code target}: {@link #WORDS_PER_ROW} longs per row,
+     * pixel {@code x} is bit {@code x & 63} of word {@code x >> 6}.
+     */
+    public void readFramebuffer(long[] target) {
+        System.arraycopy(screen, 0, target, 0, getHeight() * WORDS_PER_ROW);
+    }
+
+    public boolean getPixel(int x, int y) {
+        return (screen[y * WORDS_PER_ROW + (x >> 6)] & (1L << x)) != 0;
+    }
+
+    public int getWidth() {
+        return extendedScreen ? EXTENDED_WIDTH : DEFAULT_WIDTH;
+    }
+
+    public int getHeight() {
+        return extendedScreen ? EXTENDED_HEIGHT : DEFAULT_HEIGHT;
+    }
+
+    public int getRegister(int number) {
+        return registers[number];
+    }
+
+    public int getIndexRegister() {
+        return indexRegister;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public int getDelayTimer() {
+        return delayTimer;
+    }
+
+    public int getSoundTimer() {
+        return soundTimer;
+    }
+
+    public int readMemory(int address) {
+        return memory.read(address);
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public int getCyclesPerFrame() {
+        return cyclesPerFrame;
+    }
+
+    public void setCyclesPerFrame(int cyclesPerFrame) {
+        if (cyclesPerFrame <= 0)
+            throw new IllegalArgumentException("Cycles per frame must be positive: " + cyclesPerFrame);
+        this.cyclesPerFrame = cyclesPerFrame;
+    }
+
+    private void execute() {
+        int opcode = (memory.read(programCounter) << 8) | memory.read(programCounter + 1);
+        programCounter = (programCounter + 2) & (PagedMemory.SIZE - 1);
+        int x   = (opcode >> 8) & 0xF;
+        int y   = (opcode >> 4) & 0xF;
+        int n   = opcode & 0xF;
+        int nn  = opcode & 0xFF;
+        int nnn = opcode & 0xFFF;
+        switch (opcode >> 12) {
+            case 0x0:
+                executeSystem(opcode, n);
+                break;
+            case 0x1:
+                programCounter = nnn;
+                break;
+            case 0x2:
+                if (stackPointer == STACK_SIZE)
+                    throw new IllegalStateException(String.format("Stack overflow at #%04X", programCounter - 2));
+                stack[stackPointer++] = programCounter;
+                programCounter = nnn;
+                break;
+            case 0x3:
+                if (registers[x] == nn)
+                    skip();
+                break;
+            case 0x4:
+                if (registers[x] != nn)
+                    skip();
+                break;
+            case 0x5:
+                if (registers[x] == registers[y])
+                    skip();
+                break;
+            case 0x6:
+                registers[x] = nn;
+                break;
+            case 0x7:
+                registers[x] = (registers[x] + nn) & 0xFF;
+                break;
+            case 0x8:
+                executeArithmetic(opcode, x, y, n);
+                break;
+            case 0x9:
+                if (registers[x] != registers[y])
+                    skip();
+                break;
+            case 0xA:
+                indexRegister = nnn;
+                break;
+            case 0xB:
+                programCounter = (nnn + registers[0]) & (PagedMemory.SIZE - 1);
+                break;
+            case 0xC:
+                registers[x] = nextRandom() & nn;
+                break;
+            case 0xD:
+                draw(registers[x], registers[y], n);
+                break;
+            case 0xE:
+                if (nn == 0x9E) {
+                    if ((keys & (1 << (registers[x] & 0xF))) != 0)
+                        skip();
+                } else if (nn == 0xA1) {
+                    if ((keys & (1 << (registers[x] & 0xF))) == 0)
+                        skip();
+                } else {
+                    throw unsupported(opcode);
+                }
+                break;
+            default:
+                executeMisc(opcode, x, nn);
+                break;
+        }
+    }
+
+    private void executeSystem(int opcode, int n) {
+        if ((opcode & 0xFFF0) == 0x00C0) {
+            scrollDown(n);
+            return;
+        }
+        switch (opcode) {
+            case 0x00E0:
+                Arrays.fill(screen, 0L);
+                break;
+            case 0x00EE:
+                if (stackPointer == 0)
+                    throw new IllegalStateException(String.format("Stack underflow at #%04X", programCounter - 2));
+                programCounter = stack[--stackPointer];
+                break;
+            case 0x00FB:
+                scrollHorizontally(4);
+                break;
+            case 0x00FC:
+                scrollHorizontally(-4);
+                break;
+            case 0x00FD:
+                halted = true;
+                break;
+            case 0x00FE:
+                extendedScreen = false;
+                Arrays.fill(screen, 0L);
+                break;
+            case 0x00FF:
+                extendedScreen = true;
+                Arrays.fill(screen, 0L);
+                break;
+            default:
+                // SYS addr, machine code routines of the original interpreter
+                break;
+        }
+    }
+
+    private void executeArithmetic(int opcode, int x, int y, int n) {
+        int vx = registers[x];
+        int vy = registers[y];
+        switch (n) {
+            case 0x0:
+                registers[x] = vy;
+                break;
+            case 0x1:
+                registers[x] = vx | vy;
+                break;
+            case 0x2:
+                registers[x] = vx & vy;
+                break;
+            case 0x3:
+                registers[x] = vx ^ vy;
+                break;
+            case 0x4:
+                registers[x]   = (vx + vy) & 0xFF;
+                registers[0xF] = vx + vy > 0xFF ? 1 : 0;
+                break;
+            case 0x5:
+                registers[x]   = (vx - vy) & 0xFF;
+                registers[0xF] = vx >= vy ? 1 : 0;
+                break;
+            case 0x6:
+                registers[x]   = vx >> 1;
+                registers[0xF] = vx & 0x1;
+                break;
+            case 0x7:
+                registers[x]   = (vy - vx) & 0xFF;
+                registers[0xF] = vy >= vx ? 1 : 0;
+                break;
+            case 0xE:
+                registers[x]   = (vx << 1) & 0xFF;
+                registers[0xF] = vx >> 7;
+                break;
+            default:
+                throw unsupported(opcode);
+        }
+    }
+
+    private void executeMisc(int opcode, int x, int nn) {
+        switch (nn) {
+            case 0x07:
+                registers[x] = delayTimer;
+                break;
+            case 0x0A:
+                if (keys == 0)
+                    programCounter = (programCounter - 2) & (PagedMemory.SIZE - 1);
+                else
+                    registers[x] = Integer.numberOfTrailingZeros(keys);
+                break;
+            case 0x15:
+                delayTimer = registers[x];
+                break;
+            case 0x18:
+                soundTimer = registers[x];
+                break;
+            case 0x1E:
+                indexRegister = (indexRegister + registers[x]) & 0xFFFF;
+                break;
+            case 0x29:
+                indexRegister = FONT_ADDRESS + (registers[x] & 0xF) * 5;
+                break;
+            case 0x30:
+                indexRegister = BIG_FONT_ADDRESS + (registers[x] & 0xF) * 10;
+                break;
+            case 0x33:
+                memory.write(indexRegister,     registers[x] / 100);
+                memory.write(indexRegister + 1, registers[x] / 10 % 10);
+                memory.write(indexRegister + 2, registers[x] % 10);
+                break;
+            case 0x55:
+                for (int i = 0; i <= x; ++i)
+                    memory.write(indexRegister + i, registers[i]);
+                break;
+            case 0x65:
+                for (int i = 0; i <= x; ++i)
+                    registers[i] = memory.read(indexRegister + i);
+                break;
+            case 0x75:
+                System.arraycopy(registers, 0, flags, 0, Math.min(x + 1, flags.length));
+                break;
+            case 0x85:
+                System.arraycopy(flags, 0, registers, 0, Math.min(x + 1, flags.length));
+                break;
+            default:
+                throw unsupported(opcode);
+        }
+    }
+
+    private void draw(int x, int y, int n) {
+        int width     = getWidth();
+        int height    = getHeight();
+        int rows      = n == 0 ? 16 : n;
+        int columns   = n == 0 ? 16 : 8;
+        int collision = 0;
+        x %= width;
+        y %= height;
+        for (int row = 0; row < rows && y + row < height; ++row) {
+            int bits = columns == 16
+                    ? (memory.read(indexRegister + row * 2) << 8) | memory.read(indexRegister + row * 2 + 1)
+                    : memory.read(indexRegister + row);
+            int offset = (y + row) * WORDS_PER_ROW;
+            for (int column = 0; column < columns && x + column < width; ++column) {
+                if ((bits & (1 << (columns - 1 - column))) == 0)
+                    continue;
+                int  px   = x + column;
+                long mask = 1L << px;
+                if ((screen[offset + (px >> 6)] & mask) != 0)
+                    collision = 1;
+                screen[offset + (px >> 6)] ^= mask;
+            }
+        }
+        registers[0xF] = collision;
+    }
+
+    private void scrollDown(int n) {
+        int height = getHeight();
+        n = Math.min(n, height);
+        System.arraycopy(screen, 0, screen, n * WORDS_PER_ROW, (height - n) * WORDS_PER_ROW);
+        Arrays.fill(screen, 0, n * WORDS_PER_ROW, 0L);
+    }
+
+    private void scrollHorizontally(int shift) {
+        int height = getHeight();
+        for (int y = 0; y < height; ++y) {
+            int  offset = y * WORDS_PER_ROW;
+            long low    = screen[offset];
+            long high   = screen[offset + 1];
+            if (!extendedScreen) {
+                screen[offset] = shift > 0 ? low << shift : low >>> -shift;
+                continue;
+            }
+            if (shift > 0) {
+                screen[offset + 1] = (high << shift) | (low >>> (Long.SIZE - shift));
+                screen[offset]     = low << shift;
+            } else {
+                screen[offset]     = (low >>> -shift) | (high << (Long.SIZE + shift));
+                screen[offset + 1] = high >>> -shift;
+            }
+        }
+    }
+
+    private void skip() {
+        programCounter = (programCounter + 2) & (PagedMemory.SIZE - 1);
+    }
+
+    private int nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState >>> 32) & 0xFF;
+    }
+
+    private IllegalStateException unsupported(int opcode) {
+        return new IllegalStateException(String.format("Unsupported opcode #%04X at #%04X", opcode, programCounter - 2));
+    }
+}
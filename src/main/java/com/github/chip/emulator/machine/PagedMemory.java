@@ -0,0 +1,77 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+/**
+ * 4K address space split into 256 byte pages which are shared between forks
+ * and copied on the first write.
+ *
+ * @author helloween
+ */
+public class PagedMemory {
+    public static final int SIZE = 0x1000;
+
+    private static final int PAGE_BITS  = 8;
+    private static final int PAGE_SIZE  = 1 << PAGE_BITS;
+    private static final int PAGE_COUNT = SIZE >> PAGE_BITS;
+
+    private final byte[][] pages;
+    private int            ownedPages;
+
+    public PagedMemory() {
+        pages = new byte[PAGE_COUNT][PAGE_SIZE];
+        ownedPages = (1 << PAGE_COUNT) - 1;
+    }
+
+    private PagedMemory(byte[][] pages) {
+        this.pages = pages;
+    }
+
+    public int read(int address) {
+        address &= SIZE - 1;
+        return pages[address >> PAGE_BITS][address & (PAGE_SIZE - 1)] & 0xFF;
+    }
+
+    public void write(int address, int value) {
+        address &= SIZE - 1;
+        int page = address >> PAGE_BITS;
+        if ((ownedPages & (1 << page)) == 0) {
+            pages[page] = pages[page].clone();
+            ownedPages |= 1 << page;
+        }
+        pages[page][address & (PAGE_SIZE - 1)] = (byte) value;
+    }
+
+    /**
+     * Shares every page with the returned copy; both sides copy a page before writing to it.
+     * Must be called from the thread which owns this memory.
+     */
+    public PagedMemory fork() {
+        ownedPages = 0;
+        return new PagedMemory(pages.clone());
+    }
+
+    public int getSharedPageCount() {
+        return PAGE_COUNT - Integer.bitCount(ownedPages);
+    }
+}
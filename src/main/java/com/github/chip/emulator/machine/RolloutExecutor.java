@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs rollouts of a machine in parallel on a fixed pool, one thread per core by default.
+ * Forks are taken on the calling thread, so the root machine never leaves it.
+ *
+ * @author helloween
+ */
+public class RolloutExecutor implements AutoCloseable {
+    private final ExecutorService executorService;
+
+    public RolloutExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public RolloutExecutor(int threads) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("rollout-worker-%d")
+                                                                      .setDaemon(true)
+                                                                      .build();
+        executorService = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * @return results in the order of {@code inputs}
+     */
+    public <T, R> List<R> rollout(Chip8Machine root, List<T> inputs, Rollout<T, R> rollout)
+            throws InterruptedException, ExecutionException {
+        List<Callable<R>> tasks = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            Chip8Machine machine = root.fork();
+            tasks.add(() -> rollout.run(machine, input));
+        }
+        List<R> results = new ArrayList<>(inputs.size());
+        for (Future<R> future : executorService.invokeAll(tasks))
+            results.add(future.get());
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.metrics;
+
+import com.github.chip.emulator.core.events.ChangeProgramCounterEvent;
+import com.github.chip.emulator.core.events.PauseEvent;
+import com.github.chip.emulator.core.events.SetDelayEvent;
+import com.github.chip.emulator.core.services.AsyncEventService;
+import com.google.common.eventbus.Subscribe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds {@link SessionMetrics} from {@link AsyncEventService}. Every program counter change
+ * counts as one executed instruction and as one dispatched event; the rest of the traffic is
+ * not observed, so the collector does not add a dispatch for every event type on the bus.
+ * Timestamped probes are posted several times per sampling period to measure how long events
+ * wait before dispatch. {@link #close()} detaches the collector from the bus.
+ *
+ * @author helloween
+ */
+public class EventBusMetricsCollector implements AutoCloseable {
+    private final SessionMetrics metrics;
+    private final Runnable       probe = () -> AsyncEventService.getInstance().postEvent(new LatencyProbeEvent(System.nanoTime()));
+
+    public EventBusMetricsCollector(SessionMetrics metrics, int delay) {
+        this.metrics = metrics;
+        metrics.setInstructionPeriodNanos(TimeUnit.MILLISECONDS.toNanos(delay));
+        metrics.addProbe(probe);
+        AsyncEventService.getInstance().registerHandler(this);
+    }
+
+    @Override
+    public void close() {
+        metrics.removeProbe(probe);
+        AsyncEventService.getInstance().unregisterHandler(this);
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleLatencyProbeEvent(LatencyProbeEvent event) {
+        metrics.dispatchLatency(System.nanoTime() - event.getPostedNanos());
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleChangeProgramCounterEvent(ChangeProgramCounterEvent event) {
+        metrics.instructionsExecuted(1);
+        metrics.eventDispatched();
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handleChangeDelayEvent(SetDelayEvent event) {
+        metrics.setInstructionPeriodNanos(TimeUnit.MILLISECONDS.toNanos(event.getDelay()));
+    }
+
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handlePauseEvent(PauseEvent event) {
+        metrics.setPaused(event.isPauseFlag());
+    }
+
+    public static class LatencyProbeEvent {
+        private final long postedNanos;
+
+        public LatencyProbeEvent(long postedNanos) {
+            this.postedNanos = postedNanos;
+        }
+
+        public long getPostedNanos() {
+            return postedNanos;
+        }
+    }
+}
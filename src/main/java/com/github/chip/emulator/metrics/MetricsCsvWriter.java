@@ -0,0 +1,85 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Appends one CSV row per sampling period; register with {@link SessionMetrics#addSampleListener(Consumer)}.
+ *
+ * @author helloween
+ */
+public class MetricsCsvWriter implements Consumer<SessionMetrics>, Closeable {
+    private static final String HEADER = "timestamp,session,instructions,instructions_per_second,drift_ms,"
+                                       + "presented_frames,frames_per_second,dropped_frames,events_per_second,"
+                                       + "estimated_event_backlog,mean_event_dispatch_latency_ms,"
+                                       + "max_event_dispatch_latency_ms,run_later_backlog,"
+                                       + "allocation_bytes_per_second";
+
+    private final BufferedWriter writer;
+
+    public MetricsCsvWriter(Path path) throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void accept(SessionMetrics metrics) {
+        try {
+            writer.write(String.format(Locale.ROOT, "%d,%s,%d,%.1f,%.3f,%d,%.1f,%d,%.1f,%.2f,%.3f,%.3f,%d,%.0f",
+                    System.currentTimeMillis(),
+                    metrics.getName(),
+                    metrics.getInstructionCount(),
+                    metrics.getInstructionsPerSecond(),
+                    metrics.getEmulatedTimeDriftMillis(),
+                    metrics.getPresentedFrames(),
+                    metrics.getFramesPerSecond(),
+                    metrics.getDroppedFrames(),
+                    metrics.getEventsPerSecond(),
+                    metrics.getEstimatedEventBacklog(),
+                    metrics.getMeanEventDispatchLatencyMillis(),
+                    metrics.getMaxEventDispatchLatencyMillis(),
+                    metrics.getRunLaterBacklog(),
+                    metrics.getAllocationRateBytesPerSecond()));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
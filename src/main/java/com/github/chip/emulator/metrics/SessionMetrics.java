@@ -0,0 +1,310 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-session counters published as an MBean under {@code com.github.chip.emulator:type=Session}.
+ * Recording methods are cheap and thread-safe; rates are computed by a sampler thread
+ * once per sampling period, and probes run on the same thread several times per period.
+ *
+ * @author helloween
+ */
+public class SessionMetrics implements SessionMetricsMBean, AutoCloseable {
+    private static final String        DOMAIN           = "com.github.chip.emulator";
+    private static final AtomicInteger SESSION_COUNTER  = new AtomicInteger();
+    private static final int           PROBES_PER_PERIOD = 10;
+
+    private final String                         name;
+    private final long                           samplePeriodMillis;
+    private final ScheduledExecutorService       sampler;
+    private final List<Consumer<SessionMetrics>> sampleListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable>                 probes          = new CopyOnWriteArrayList<>();
+    private final LongAdder                      instructions    = new LongAdder();
+    private final LongAdder                      emulatedNanos   = new LongAdder();
+    private final LongAdder                      presentedFrames = new LongAdder();
+    private final LongAdder                      droppedFrames   = new LongAdder();
+    private final LongAdder                      events          = new LongAdder();
+    private final LongAdder                      latencySum      = new LongAdder();
+    private final LongAdder                      latencyCount    = new LongAdder();
+    private final LongAccumulator                latencyMax      = new LongAccumulator(Math::max, 0);
+    private ObjectName                           objectName;
+    private volatile long                        startNanos      = System.nanoTime();
+    private volatile IntSupplier                 runLaterBacklog = () -> 0;
+    private volatile long                        instructionPeriodNanos;
+    private long                                 pausedNanos;
+    private long                                 pauseStartNanos = -1;
+
+    private volatile double instructionsPerSecond;
+    private volatile double framesPerSecond;
+    private volatile double eventsPerSecond;
+    private volatile double meanLatencyNanos = -1;
+    private volatile double maxLatencyNanos  = -1;
+    private volatile double allocationRate = -1;
+
+    private long lastSampleNanos;
+    private long lastInstructions;
+    private long lastFrames;
+    private long lastEvents;
+    private long lastAllocatedBytes = totalAllocatedBytes();
+
+    public SessionMetrics(String prefix, long samplePeriodMillis) {
+        this.name               = prefix + "-" + SESSION_COUNTER.incrementAndGet();
+        this.samplePeriodMillis = samplePeriodMillis;
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("metrics-sampler-%d")
+                                                                      .setDaemon(true)
+                                                                      .build();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    public void start() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        objectName = new ObjectName(DOMAIN + ":type=Session,name=" + name);
+        server.registerMBean(this, objectName);
+        startNanos      = System.nanoTime();
+        lastSampleNanos = startNanos;
+        sampler.scheduleAtFixedRate(this::sample, samplePeriodMillis, samplePeriodMillis, TimeUnit.MILLISECONDS);
+        long probePeriodMillis = Math.max(samplePeriodMillis / PROBES_PER_PERIOD, 1);
+        sampler.scheduleAtFixedRate(this::probe, 0, probePeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        try {
+            // listeners such as the CSV writer may be closed right after this returns
+            sampler.awaitTermination(samplePeriodMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (objectName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        objectName = null;
+    }
+
+    public void addSampleListener(Consumer<SessionMetrics> listener) {
+        sampleListeners.add(listener);
+    }
+
+    /**
+     * Runs {@code probe} {@value #PROBES_PER_PERIOD} times per sampling period, e.g. to post latency probes.
+     */
+    public void addProbe(Runnable probe) {
+        probes.add(probe);
+    }
+
+    public void removeProbe(Runnable probe) {
+        probes.remove(probe);
+    }
+
+    public void instructionsExecuted(long count) {
+        instructions.add(count);
+        emulatedNanos.add(count * instructionPeriodNanos);
+    }
+
+    public void setInstructionPeriodNanos(long instructionPeriodNanos) {
+        this.instructionPeriodNanos = instructionPeriodNanos;
+    }
+
+    public synchronized void setPaused(boolean paused) {
+        long now = System.nanoTime();
+        if (paused && pauseStartNanos < 0) {
+            pauseStartNanos = now;
+        } else if (!paused && pauseStartNanos >= 0) {
+            pausedNanos    += now - pauseStartNanos;
+            pauseStartNanos = -1;
+        }
+    }
+
+    public void framePresented() {
+        presentedFrames.increment();
+    }
+
+    public void frameDropped() {
+        droppedFrames.increment();
+    }
+
+    public void eventDispatched() {
+        events.increment();
+    }
+
+    public void dispatchLatency(long nanos) {
+        latencySum.add(nanos);
+        latencyCount.increment();
+        latencyMax.accumulate(nanos);
+    }
+
+    public void setRunLaterBacklog(IntSupplier runLaterBacklog) {
+        this.runLaterBacklog = runLaterBacklog;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getInstructionCount() {
+        return instructions.sum();
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return instructionsPerSecond;
+    }
+
+    @Override
+    public double getEmulatedTimeDriftMillis() {
+        if (instructionPeriodNanos == 0)
+            return 0;
+        return (activeNanos() - emulatedNanos.sum()) / 1e6;
+    }
+
+    @Override
+    public long getPresentedFrames() {
+        return presentedFrames.sum();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    @Override
+    public double getEstimatedEventBacklog() {
+        double latencyNanos = meanLatencyNanos;
+        return latencyNanos < 0 ? 0 : eventsPerSecond * latencyNanos / 1e9;
+    }
+
+    @Override
+    public double getMeanEventDispatchLatencyMillis() {
+        double latencyNanos = meanLatencyNanos;
+        return latencyNanos < 0 ? -1 : latencyNanos / 1e6;
+    }
+
+    @Override
+    public double getMaxEventDispatchLatencyMillis() {
+        double latencyNanos = maxLatencyNanos;
+        return latencyNanos < 0 ? -1 : latencyNanos / 1e6;
+    }
+
+    @Override
+    public int getRunLaterBacklog() {
+        return runLaterBacklog.getAsInt();
+    }
+
+    @Override
+    public double getAllocationRateBytesPerSecond() {
+        return allocationRate;
+    }
+
+    private synchronized long activeNanos() {
+        long now    = System.nanoTime();
+        long paused = pausedNanos + (pauseStartNanos >= 0 ? now - pauseStartNanos : 0);
+        return now - startNanos - paused;
+    }
+
+    private void sample() {
+        try {
+            long   now     = System.nanoTime();
+            double seconds = (now - lastSampleNanos) / 1e9;
+            long   currentInstructions = instructions.sum();
+            long   currentFrames       = presentedFrames.sum();
+            long   currentEvents       = events.sum();
+            long   allocatedBytes      = totalAllocatedBytes();
+            instructionsPerSecond = (currentInstructions - lastInstructions) / seconds;
+            framesPerSecond       = (currentFrames - lastFrames) / seconds;
+            eventsPerSecond       = (currentEvents - lastEvents) / seconds;
+            // a probe dispatched between the resets is counted in the next period
+            long latencyTotal     = latencySum.sumThenReset();
+            long probesDispatched = latencyCount.sumThenReset();
+            long latencyPeak      = latencyMax.getThenReset();
+            meanLatencyNanos      = probesDispatched == 0 ? -1 : (double) latencyTotal / probesDispatched;
+            maxLatencyNanos       = probesDispatched == 0 ? -1 : latencyPeak;
+            // threads which died since the last sample take their counters with them
+            allocationRate        = allocatedBytes < 0 ? -1 : Math.max(allocatedBytes - lastAllocatedBytes, 0) / seconds;
+            lastSampleNanos    = now;
+            lastInstructions   = currentInstructions;
+            lastFrames         = currentFrames;
+            lastEvents         = currentEvents;
+            lastAllocatedBytes = allocatedBytes;
+            for (Consumer<SessionMetrics> listener : sampleListeners)
+                listener.accept(this);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void probe() {
+        try {
+            for (Runnable probe : probes)
+                probe.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long totalAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for (long bytes : allocationBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+            if (bytes > 0)
+                total += bytes;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.metrics;
+
+/**
+ * @author helloween
+ */
+public interface SessionMetricsMBean {
+    String getName();
+
+    long getInstructionCount();
+
+    double getInstructionsPerSecond();
+
+    /**
+     * Wall clock time minus emulated time; positive when the emulator falls behind.
+     */
+    double getEmulatedTimeDriftMillis();
+
+    long getPresentedFrames();
+
+    double getFramesPerSecond();
+
+    long getDroppedFrames();
+
+    /**
+     * Rate of the events the session counts; for the UI these are the program counter changes,
+     * which dominate the event service traffic.
+     */
+    double getEventsPerSecond();
+
+    /**
+     * Estimated from the counted event rate and the mean dispatch latency (Little's law);
+     * events the session does not count are not included.
+     */
+    double getEstimatedEventBacklog();
+
+    /**
+     * Over the last sampling period; -1 if no latency probe was dispatched in it.
+     */
+    double getMeanEventDispatchLatencyMillis();
+
+    /**
+     * Over the last sampling period; -1 if no latency probe was dispatched in it.
+     */
+    double getMaxEventDispatchLatencyMillis();
+
+    int getRunLaterBacklog();
+
+    /**
+     * -1 if the JVM does not support per-thread allocation accounting.
+     */
+    double getAllocationRateBytesPerSecond();
+}
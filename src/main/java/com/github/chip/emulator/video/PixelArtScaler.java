@@ -0,0 +1,216 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.video;
+
+import com.github.chip.emulator.machine.Chip8Machine;
+
+import java.util.Arrays;
+
+import static com.github.chip.emulator.machine.Chip8Machine.WORDS_PER_ROW;
+
+/**
+ * Expands a packed 1-bit framebuffer (the {@link Chip8Machine#readFramebuffer(long[])} layout)
+ * into an ARGB buffer. The previous frame is kept, so only rows which changed, plus the rows
+ * next to them which the filter reads, are rendered again.
+ *
+ * @author helloween
+ */
+public class PixelArtScaler {
+    private final ScaleFilter filter;
+    private final int         scale;
+    private final int         width;
+    private final int         height;
+    private final int         outputWidth;
+    private final int         outputHeight;
+    private final int[]       columnStart;
+    private final int[]       rowStart;
+    private final int[]       pixels;
+    private final int[]       blocks;
+    private final long[]      previous;
+    private final boolean[]   changed;
+    private int               pixelColor;
+    private int               backgroundColor;
+    private boolean           valid;
+    private int               dirtyFrom;
+    private int               dirtyTo;
+
+    public PixelArtScaler(ScaleFilter filter, int scale, int width, int height, int pixelColor, int backgroundColor) {
+        if (scale < filter.getFactor())
+            throw new IllegalArgumentException(String.format("Scale x%d is too small for %s", scale, filter.getTitle()));
+        this.filter          = filter;
+        this.scale           = scale;
+        this.width           = width;
+        this.height          = height;
+        this.outputWidth     = width * scale;
+        this.outputHeight    = height * scale;
+        this.columnStart     = boundaries(width, scale, filter.getFactor());
+        this.rowStart        = boundaries(height, scale, filter.getFactor());
+        this.pixels          = new int[outputWidth * outputHeight];
+        this.blocks          = new int[width];
+        this.previous        = new long[height * WORDS_PER_ROW];
+        this.changed         = new boolean[height];
+        this.pixelColor      = pixelColor;
+        this.backgroundColor = backgroundColor;
+    }
+
+    /**
+     * Packs a column-major screen ({@code screen[x][y]}) into {@code target}.
+     */
+    public static void pack(boolean[][] screen, long[] target) {
+        Arrays.fill(target, 0L);
+        for (int x = 0; x < screen.length; ++x) {
+            boolean[] column = screen[x];
+            for (int y = 0; y < column.length; ++y) {
+                if (column[y])
+                    target[y * WORDS_PER_ROW + (x >> 6)] |= 1L << x;
+            }
+        }
+    }
+
+    /**
+     * @return true if any output row changed, see {@link #getDirtyFrom()} and {@link #getDirtyTo()}
+     */
+    public boolean render(long[] frame) {
+        int reach = filter.getFactor() > 1 ? 1 : 0;
+        boolean any = false;
+        for (int y = 0; y < height; ++y) {
+            boolean rowChanged = !valid;
+            for (int i = y * WORDS_PER_ROW; i < (y + 1) * WORDS_PER_ROW && !rowChanged; ++i)
+                rowChanged = frame[i] != previous[i];
+            changed[y] = rowChanged;
+            any |= rowChanged;
+        }
+        dirtyFrom = outputHeight;
+        dirtyTo   = 0;
+        if (!any)
+            return false;
+
+        int first = height;
+        int last  = -1;
+        for (int y = 0; y < height; ++y) {
+            if (!isAffected(y, reach))
+                continue;
+            renderRow(frame, y);
+            first = Math.min(first, y);
+            last  = y;
+        }
+        System.arraycopy(frame, 0, previous, 0, previous.length);
+        valid     = true;
+        dirtyFrom = rowStart[first * filter.getFactor()];
+        dirtyTo   = rowStart[(last + 1) * filter.getFactor()];
+        return true;
+    }
+
+    public void setColors(int pixelColor, int backgroundColor) {
+        if (this.pixelColor != pixelColor || this.backgroundColor != backgroundColor)
+            invalidate();
+        this.pixelColor      = pixelColor;
+        this.backgroundColor = backgroundColor;
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    public boolean matches(ScaleFilter filter, int scale, int width, int height) {
+        return this.filter == filter && this.scale == scale && this.width == width && this.height == height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    public int getDirtyFrom() {
+        return dirtyFrom;
+    }
+
+    public int getDirtyTo() {
+        return dirtyTo;
+    }
+
+    private boolean isAffected(int y, int reach) {
+        for (int i = Math.max(y - reach, 0); i <= Math.min(y + reach, height - 1); ++i) {
+            if (changed[i])
+                return true;
+        }
+        return false;
+    }
+
+    private void renderRow(long[] frame, int y) {
+        int factor = filter.getFactor();
+        int above  = Math.max(y - 1, 0) * WORDS_PER_ROW;
+        int row    = y * WORDS_PER_ROW;
+        int below  = Math.min(y + 1, height - 1) * WORDS_PER_ROW;
+        // 3-bit columns (top, middle, bottom) slide along the row, edges are clamped
+        int left   = column(frame, above, row, below, 0);
+        int middle = left;
+        for (int x = 0; x < width; ++x) {
+            int right = x + 1 < width ? column(frame, above, row, below, x + 1) : middle;
+            int code  = ((left & 4) << 6) | ((middle & 4) << 5) | ((right & 4) << 4)
+                      | ((left & 2) << 4) | ((middle & 2) << 3) | ((right & 2) << 2)
+                      | ((left & 1) << 2) | ((middle & 1) << 1) | (right & 1);
+            blocks[x] = filter.lookup(code);
+            left   = middle;
+            middle = right;
+        }
+
+        for (int subRow = 0; subRow < factor; ++subRow) {
+            int from = rowStart[y * factor + subRow];
+            int to   = rowStart[y * factor + subRow + 1];
+            int base = from * outputWidth;
+            for (int x = 0; x < width; ++x) {
+                int block = blocks[x] >> (subRow * factor);
+                for (int subColumn = 0; subColumn < factor; ++subColumn) {
+                    int color = (block & (1 << subColumn)) != 0 ? pixelColor : backgroundColor;
+                    int cell  = x * factor + subColumn;
+                    Arrays.fill(pixels, base + columnStart[cell], base + columnStart[cell + 1], color);
+                }
+            }
+            for (int line = from + 1; line < to; ++line)
+                System.arraycopy(pixels, base, pixels, line * outputWidth, outputWidth);
+        }
+    }
+
+    private static int column(long[] frame, int above, int row, int below, int x) {
+        int  word = x >> 6;
+        long mask = 1L << x;
+        return ((frame[above + word] & mask) != 0 ? 4 : 0)
+             | ((frame[row + word] & mask) != 0 ? 2 : 0)
+             | ((frame[below + word] & mask) != 0 ? 1 : 0);
+    }
+
+    private static int[] boundaries(int size, int scale, int factor) {
+        int[] result = new int[size * factor + 1];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = i * scale / factor;
+        return result;
+    }
+}
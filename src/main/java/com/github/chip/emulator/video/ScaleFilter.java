@@ -0,0 +1,111 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.video;
+
+/**
+ * Pixel-art magnification filters for 1-bit images. Each filter is a lookup table from
+ * the 3x3 neighbourhood of a pixel (bit 8 = top-left ... bit 0 = bottom-right) to the
+ * {@code factor x factor} block it expands to (bit {@code row * factor + column}).
+ * For two-colour images EPX and AdvMAME2x produce the same output as Scale2x.
+ *
+ * @author helloween
+ */
+public enum ScaleFilter {
+    NEAREST("None", 1),
+    SCALE2X("Scale2x (EPX)", 2),
+    SCALE3X("Scale3x", 3);
+
+    private static final int NEIGHBOURHOODS = 1 << 9;
+
+    private final String title;
+    private final int    factor;
+    private final int[]  table;
+
+    ScaleFilter(String title, int factor) {
+        this.title  = title;
+        this.factor = factor;
+        this.table  = new int[NEIGHBOURHOODS];
+        for (int code = 0; code < NEIGHBOURHOODS; ++code)
+            table[code] = expand(factor, code);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getFactor() {
+        return factor;
+    }
+
+    public int lookup(int neighbourhood) {
+        return table[neighbourhood];
+    }
+
+    private static int expand(int factor, int code) {
+        boolean a = (code & 0x100) != 0;
+        boolean b = (code & 0x080) != 0;
+        boolean c = (code & 0x040) != 0;
+        boolean d = (code & 0x020) != 0;
+        boolean e = (code & 0x010) != 0;
+        boolean f = (code & 0x008) != 0;
+        boolean g = (code & 0x004) != 0;
+        boolean h = (code & 0x002) != 0;
+        boolean i = (code & 0x001) != 0;
+        switch (factor) {
+            case 1:
+                return e ? 1 : 0;
+            case 2:
+                return bits(
+                        d == b && b != f && d != h ? d : e,
+                        b == f && b != d && f != h ? f : e,
+                        d == h && d != b && h != f ? d : e,
+                        h == f && d != h && b != f ? f : e);
+            case 3:
+                boolean topLeft     = d == b && b != f && d != h;
+                boolean topRight    = b == f && b != d && f != h;
+                boolean bottomLeft  = d == h && d != b && h != f;
+                boolean bottomRight = h == f && d != h && b != f;
+                return bits(
+                        topLeft ? d : e,
+                        (topLeft && e != c) || (topRight && e != a) ? b : e,
+                        topRight ? f : e,
+                        (topLeft && e != g) || (bottomLeft && e != a) ? d : e,
+                        e,
+                        (topRight && e != i) || (bottomRight && e != c) ? f : e,
+                        bottomLeft ? d : e,
+                        (bottomLeft && e != i) || (bottomRight && e != g) ? h : e,
+                        bottomRight ? f : e);
+            default:
+                throw new IllegalArgumentException("Unsupported factor: " + factor);
+        }
+    }
+
+    private static int bits(boolean... values) {
+        int result = 0;
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i])
+                result |= 1 << i;
+        }
+        return result;
+    }
+}
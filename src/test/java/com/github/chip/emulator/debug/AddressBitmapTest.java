@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.debug;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author helloween
+ */
+public class AddressBitmapTest {
+    private static final int SIZE = 0x1000;
+
+    @Test
+    public void intersectsMatchesBitSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; ++round) {
+            AddressBitmap bitmap   = new AddressBitmap(SIZE);
+            BitSet        expected = new BitSet(SIZE);
+            int marks = random.nextInt(8);
+            for (int i = 0; i < marks; ++i) {
+                int address = random.nextInt(SIZE);
+                bitmap.set(address);
+                expected.set(address);
+            }
+            for (int i = 0; i < 100; ++i) {
+                int from = random.nextInt(SIZE + 64) - 32;
+                int to   = from + random.nextInt(300);
+                int next = expected.nextSetBit(Math.max(from, 0));
+                boolean hit = next >= 0 && next < Math.min(to, SIZE);
+                assertEquals(hit, bitmap.intersects(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void nextSetBitMatchesBitSet() {
+        Random random = new Random(7);
+        AddressBitmap bitmap   = new AddressBitmap(SIZE);
+        BitSet        expected = new BitSet(SIZE);
+        for (int i = 0; i < 300; ++i) {
+            int address = random.nextInt(SIZE);
+            if (bitmap.toggle(address))
+                expected.set(address);
+            else
+                expected.clear(address);
+        }
+        for (int from = 0; from <= SIZE; ++from) {
+            int next = expected.nextSetBit(from);
+            assertEquals(next >= SIZE ? -1 : next, bitmap.nextSetBit(from));
+        }
+    }
+
+    @Test
+    public void clearingLastAddressEmptiesBitmap() {
+        AddressBitmap bitmap = new AddressBitmap(SIZE);
+        bitmap.set(0x300);
+        bitmap.set(0x3FF);
+        bitmap.clear(0x300);
+        assertFalse(bitmap.isEmpty());
+        assertTrue(bitmap.intersects(0x3FF, 0x400));
+        bitmap.clear(0x3FF);
+        assertTrue(bitmap.isEmpty());
+        assertFalse(bitmap.intersects(0, SIZE));
+    }
+
+    @Test
+    public void boundsOfRange() {
+        AddressBitmap bitmap = new AddressBitmap(SIZE);
+        bitmap.set(0x40);
+        assertFalse(bitmap.intersects(0x30, 0x40));
+        assertTrue(bitmap.intersects(0x40, 0x41));
+        assertFalse(bitmap.intersects(0x41, 0x80));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.contains(SIZE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setRejectsAddressOutOfRange() {
+        new AddressBitmap(SIZE).set(SIZE);
+    }
+}
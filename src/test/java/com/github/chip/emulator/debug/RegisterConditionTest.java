@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.debug;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author helloween
+ */
+public class RegisterConditionTest {
+    @Test
+    public void parsesHexValue() {
+        RegisterCondition condition = RegisterCondition.parse("V3 == 0x10");
+        assertEquals(3, condition.getRegisterNumber());
+        assertEquals(RegisterCondition.Operator.EQ, condition.getOperator());
+        assertEquals(0x10, condition.getValue());
+        assertTrue(condition.test(0x10));
+        assertFalse(condition.test(0x11));
+    }
+
+    @Test
+    public void parsesAllLiteralForms() {
+        assertEquals(0x1F, RegisterCondition.parse("va >= #1F").getValue());
+        assertEquals(200, RegisterCondition.parse("VF<200").getValue());
+        assertEquals(0xAB, RegisterCondition.parse(" V0 != 0XAB ").getValue());
+    }
+
+    @Test
+    public void operatorsCompare() {
+        assertTrue(RegisterCondition.parse("V1 < 5").test(4));
+        assertFalse(RegisterCondition.parse("V1 < 5").test(5));
+        assertTrue(RegisterCondition.parse("V1 <= 5").test(5));
+        assertTrue(RegisterCondition.parse("V1 > 5").test(6));
+        assertFalse(RegisterCondition.parse("V1 >= 5").test(4));
+        assertTrue(RegisterCondition.parse("V1 != 5").test(4));
+    }
+
+    @Test
+    public void formatsAsHex() {
+        assertEquals("VC == #0A", RegisterCondition.parse("VC == 10").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownRegister() {
+        RegisterCondition.parse("VG == 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsValueOutOfRange() {
+        RegisterCondition.parse("V1 == 0x100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingOperator() {
+        RegisterCondition.parse("V1 5");
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author helloween
+ */
+public class Chip8MachineTest {
+    private static final long SEED = 1234;
+
+    @Test
+    public void forkWriteDoesNotChangeParent() {
+        // I = #300, V0 = 5, store V0 at I, loop
+        Chip8Machine parent = load(0xA300, 0x6005, 0xF055, 0x1206);
+        Chip8Machine fork   = parent.fork();
+        fork.step(3);
+        assertEquals(5, fork.readMemory(0x300));
+        assertEquals(0, parent.readMemory(0x300));
+        assertEquals(Chip8Machine.PROGRAM_START, parent.getProgramCounter());
+        assertEquals(0, parent.getRegister(0));
+    }
+
+    @Test
+    public void forksWithSameSeedAndInputAreIdentical() {
+        // hires, random position, draw the "0" glyph, skip the jump while the key in V0 is pressed
+        Chip8Machine root = load(0x00FF, 0xC07F, 0xC13F, 0xA000, 0xD015, 0xE09E, 0x1202, 0x1202);
+        root.step(50);
+        Chip8Machine first  = root.fork();
+        Chip8Machine second = root.fork();
+        for (int frame = 0; frame < 100; ++frame) {
+            int keys = 1 << (frame % 16);
+            first.setKeys(keys);
+            second.setKeys(keys);
+            first.step(20);
+            second.step(20);
+        }
+        long[] firstScreen  = new long[Chip8Machine.EXTENDED_HEIGHT * Chip8Machine.WORDS_PER_ROW];
+        long[] secondScreen = new long[firstScreen.length];
+        first.readFramebuffer(firstScreen);
+        second.readFramebuffer(secondScreen);
+        assertArrayEquals(firstScreen, secondScreen);
+        assertEquals(first.getProgramCounter(), second.getProgramCounter());
+        assertEquals(first.getInstructionCount(), second.getInstructionCount());
+        boolean blank = true;
+        for (long word : firstScreen)
+            blank &= word == 0;
+        assertFalse(blank);
+    }
+
+    @Test
+    public void extendedSpriteCrossesWordBoundary() {
+        Chip8Machine machine = drawExtendedSprite(0x6200);
+        assertEquals(Chip8Machine.EXTENDED_WIDTH, machine.getWidth());
+        assertEquals(Chip8Machine.EXTENDED_HEIGHT, machine.getHeight());
+        for (int y = 2; y < 18; ++y) {
+            assertTrue(machine.getPixel(60, y));
+            assertFalse(machine.getPixel(61, y));
+            assertFalse(machine.getPixel(74, y));
+            assertTrue(machine.getPixel(75, y));
+        }
+        assertFalse(machine.getPixel(60, 1));
+        assertFalse(machine.getPixel(60, 18));
+        assertEquals(0, machine.getRegister(0xF));
+    }
+
+    @Test
+    public void redrawReportsCollisionAndErases() {
+        // draw the extended sprite a second time at the same place
+        Chip8Machine machine = drawExtendedSprite(0xD010);
+        assertFalse(machine.getPixel(60, 2));
+        assertFalse(machine.getPixel(75, 2));
+        assertEquals(1, machine.getRegister(0xF));
+    }
+
+    @Test
+    public void scrollRightCarriesAcrossWords() {
+        Chip8Machine machine = drawExtendedSprite(0x00FB);
+        assertFalse(machine.getPixel(60, 2));
+        assertTrue(machine.getPixel(64, 2));
+        assertTrue(machine.getPixel(79, 2));
+        assertFalse(machine.getPixel(75, 2));
+    }
+
+    @Test
+    public void scrollLeftCarriesAcrossWords() {
+        Chip8Machine machine = drawExtendedSprite(0x00FC);
+        assertTrue(machine.getPixel(56, 2));
+        assertTrue(machine.getPixel(71, 2));
+        assertFalse(machine.getPixel(60, 2));
+        assertFalse(machine.getPixel(75, 2));
+    }
+
+    @Test
+    public void scrollDownMovesRows() {
+        Chip8Machine machine = drawExtendedSprite(0x00C3);
+        for (int y = 0; y < 5; ++y)
+            assertFalse(machine.getPixel(60, y));
+        assertTrue(machine.getPixel(60, 5));
+        assertTrue(machine.getPixel(60, 20));
+        assertFalse(machine.getPixel(60, 21));
+    }
+
+    @Test
+    public void lowResolutionScrollDropsPixelsPastEdge() {
+        // V0 = 0, V1 = 0, draw one pixel at (0, 0) and at (62, 0), scroll right
+        Chip8Machine machine = load(0x6000, 0x6100, 0xA20E, 0xD011, 0x603E, 0xD011, 0x00FB, 0x8000);
+        machine.step(7);
+        assertEquals(Chip8Machine.DEFAULT_WIDTH, machine.getWidth());
+        assertTrue(machine.getPixel(4, 0));
+        assertFalse(machine.getPixel(0, 0));
+        long[] screen = new long[Chip8Machine.DEFAULT_HEIGHT * Chip8Machine.WORDS_PER_ROW];
+        machine.readFramebuffer(screen);
+        assertEquals(1L << 4, screen[0]);
+        assertEquals(0L, screen[1]);
+    }
+
+    @Test
+    public void exitHaltsMachine() {
+        Chip8Machine machine = load(0x6001, 0x00FD, 0x6002);
+        assertEquals(2, machine.step(10));
+        assertTrue(machine.isHalted());
+        assertEquals(1, machine.getRegister(0));
+    }
+
+    @Test
+    public void waitForKeyStoresPressedKey() {
+        Chip8Machine machine = load(0xF30A, 0x1202);
+        machine.step(5);
+        assertEquals(Chip8Machine.PROGRAM_START, machine.getProgramCounter());
+        machine.setKey(0xA, true);
+        machine.step(1);
+        assertEquals(0xA, machine.getRegister(3));
+    }
+
+    @Test
+    public void sysIsIgnored() {
+        Chip8Machine machine = load(0x0123, 0x6001, 0x00FD);
+        assertEquals(3, machine.step(10));
+        assertEquals(1, machine.getRegister(0));
+    }
+
+    @Test
+    public void unsupportedOpcodeKeepsCountAndProgramCounter() {
+        Chip8Machine machine = load(0x6001, 0x6002, 0x8008);
+        try {
+            machine.step(10);
+            fail("unsupported opcode must throw");
+        } catch (IllegalStateException e) {
+            assertEquals(2, machine.getInstructionCount());
+            assertEquals(Chip8Machine.PROGRAM_START + 4, machine.getProgramCounter());
+            assertEquals(2, machine.getRegister(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setKeyRejectsUnknownKey() {
+        load(0x1200).setKey(0x10, true);
+    }
+
+    /**
+     * Draws a 16x16 sprite whose rows only have the outer pixels set at (60, 2) in extended mode,
+     * runs {@code next} and exits.
+     */
+    private static Chip8Machine drawExtendedSprite(int next) {
+        int[] program = new int[24];
+        program[0] = 0x00FF;
+        program[1] = 0x603C;
+        program[2] = 0x6102;
+        program[3] = 0xA210;
+        program[4] = 0xD010;
+        program[5] = next;
+        program[6] = 0x00FD;
+        for (int i = 8; i < 24; ++i)
+            program[i] = 0x8001;
+        Chip8Machine machine = load(program);
+        machine.step(100);
+        assertTrue(machine.isHalted());
+        return machine;
+    }
+
+    private static Chip8Machine load(int... words) {
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * 2);
+        for (int word : words)
+            buffer.putShort((short) word);
+        buffer.flip();
+        return new Chip8Machine(buffer, SEED);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author helloween
+ */
+public class PagedMemoryTest {
+    @Test
+    public void forkSharesAllPages() {
+        PagedMemory memory = new PagedMemory();
+        PagedMemory fork   = memory.fork();
+        assertEquals(16, memory.getSharedPageCount());
+        assertEquals(16, fork.getSharedPageCount());
+    }
+
+    @Test
+    public void writeCopiesOnlyTouchedPage() {
+        PagedMemory memory = new PagedMemory();
+        memory.write(0x300, 0x11);
+        PagedMemory fork = memory.fork();
+        fork.write(0x301, 0x22);
+        assertEquals(15, fork.getSharedPageCount());
+        assertEquals(16, memory.getSharedPageCount());
+        assertEquals(0x11, fork.read(0x300));
+        assertEquals(0x22, fork.read(0x301));
+        assertEquals(0x00, memory.read(0x301));
+    }
+
+    @Test
+    public void parentWriteDoesNotLeakIntoFork() {
+        PagedMemory memory = new PagedMemory();
+        PagedMemory fork   = memory.fork();
+        memory.write(0x200, 0xAB);
+        assertEquals(0xAB, memory.read(0x200));
+        assertEquals(0x00, fork.read(0x200));
+    }
+
+    @Test
+    public void addressesWrapAround() {
+        PagedMemory memory = new PagedMemory();
+        memory.write(0x1000 + 0x10, 0xFF);
+        assertEquals(0xFF, memory.read(0x10));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.machine;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author helloween
+ */
+public class RolloutExecutorTest {
+    // V0 += 1, loop
+    private static final byte[] PROGRAM = {0x70, 0x01, 0x12, 0x00};
+
+    @Test
+    public void resultsFollowInputOrder() throws Exception {
+        Chip8Machine root = new Chip8Machine(ByteBuffer.wrap(PROGRAM), 1);
+        List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 64; ++i)
+            inputs.add(i);
+        try (RolloutExecutor executor = new RolloutExecutor(4)) {
+            List<Integer> results = executor.rollout(root, inputs, (machine, input) -> {
+                machine.step(input * 2);
+                return machine.getRegister(0);
+            });
+            assertEquals(inputs, results);
+        }
+        assertEquals(0, root.getInstructionCount());
+        assertEquals(0, root.getRegister(0));
+    }
+
+    @Test
+    public void rolloutFailureIsPropagated() throws Exception {
+        Chip8Machine root = new Chip8Machine(ByteBuffer.wrap(PROGRAM), 1);
+        try (RolloutExecutor executor = new RolloutExecutor(2)) {
+            executor.rollout(root, Arrays.asList(1, 2, 3), (machine, input) -> {
+                if (input == 2)
+                    throw new IllegalStateException("rollout " + input);
+                return input;
+            });
+            fail("failure must be propagated");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("rollout 2", e.getCause().getMessage());
+        }
+    }
+}
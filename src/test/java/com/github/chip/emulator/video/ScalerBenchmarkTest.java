@@ -0,0 +1,169 @@
+/**
+ * MIT License
+ * Copyright (c) 2017 Helloween
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.github.chip.emulator.video;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.chip.emulator.machine.Chip8Machine.EXTENDED_HEIGHT;
+import static com.github.chip.emulator.machine.Chip8Machine.EXTENDED_WIDTH;
+import static com.github.chip.emulator.machine.Chip8Machine.WORDS_PER_ROW;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that one frame of {@link PixelArtScaler} at x20 on a 128x64 screen stays within
+ * {@link #FRAME_BUDGET_MILLIS} at the 99th percentile for every filter. A frame is timed as in
+ * {@code Chip8Emulator}: packing the screen, rendering, and copying the dirty band into an
+ * image-sized buffer in place of {@code PixelWriter.setPixels}. The canvas {@code drawImage}
+ * needs a JavaFX toolkit and is not measured.
+ * <p>
+ * The worst case inverts the whole screen every frame; the typical case moves one 8x15 sprite.
+ * Everything is warmed up and allocated before measuring, so neither JIT compilation nor
+ * collection of the 13 MB output buffers falls inside a measured frame. Frames are timed in thread
+ * CPU time, so time the test thread spends descheduled on a busy build machine is not counted,
+ * and each scenario is measured up to {@link #ROUNDS} times keeping the best percentile.
+ *
+ * @author helloween
+ */
+public class ScalerBenchmarkTest {
+    private static final double FRAME_BUDGET_MILLIS = 4.0;
+    private static final int    SCALE               = 20;
+    private static final int    WARMUP_FRAMES       = 1000;
+    private static final int    MEASURED_FRAMES     = 500;
+    private static final int    ROUNDS              = 5;
+    private static final int    SPRITE_HEIGHT       = 15;
+    private static final int    PIXEL_COLOR         = 0xFF202A35;
+    private static final int    BACKGROUND_COLOR    = 0xFF8F9185;
+
+    private final boolean[][]  screen     = new boolean[EXTENDED_WIDTH][EXTENDED_HEIGHT];
+    private final long[]       frame      = new long[EXTENDED_HEIGHT * WORDS_PER_ROW];
+    private final long[]       times      = new long[MEASURED_FRAMES];
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void frameTimeWithinBudget() {
+        assumeTrue(threadBean.isCurrentThreadCpuTimeSupported());
+        threadBean.setThreadCpuTimeEnabled(true);
+        ScaleFilter[]    filters = ScaleFilter.values();
+        PixelArtScaler[] scalers = new PixelArtScaler[filters.length];
+        int[][]          images  = new int[filters.length][];
+        for (int i = 0; i < filters.length; ++i) {
+            scalers[i] = new PixelArtScaler(filters[i], SCALE, EXTENDED_WIDTH, EXTENDED_HEIGHT, PIXEL_COLOR, BACKGROUND_COLOR);
+            images[i]  = new int[scalers[i].getPixels().length];
+        }
+
+        for (int i = 0; i < filters.length; ++i) {
+            run(scalers[i], images[i], true, WARMUP_FRAMES, false);
+            run(scalers[i], images[i], false, WARMUP_FRAMES, false);
+        }
+
+        List<String> overBudget = new ArrayList<>();
+        for (int i = 0; i < filters.length; ++i) {
+            check(overBudget, filters[i] + " full screen", measure(scalers[i], images[i], true));
+            check(overBudget, filters[i] + " sprite", measure(scalers[i], images[i], false));
+        }
+        assertTrue("p99 frame time over " + FRAME_BUDGET_MILLIS + " ms: " + overBudget, overBudget.isEmpty());
+    }
+
+    /**
+     * @return the lowest 99th percentile frame time of {@link #ROUNDS} rounds in milliseconds
+     */
+    private double measure(PixelArtScaler scaler, int[] image, boolean fullScreen) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && best > FRAME_BUDGET_MILLIS; ++round)
+            best = Math.min(best, run(scaler, image, fullScreen, MEASURED_FRAMES, true));
+        return best;
+    }
+
+    /**
+     * @return 99th percentile frame time in milliseconds, or 0 if {@code measure} is false
+     */
+    private double run(PixelArtScaler scaler, int[] image, boolean fullScreen, int frames, boolean measure) {
+        Random random = new Random(42);
+        for (boolean[] column : screen) {
+            for (int y = 0; y < column.length; ++y)
+                column[y] = random.nextBoolean();
+        }
+        scaler.invalidate();
+        PixelArtScaler.pack(screen, frame);
+        scaler.render(frame);
+        if (measure)
+            System.gc();
+
+        for (int i = 0; i < frames; ++i) {
+            if (fullScreen)
+                invert(screen);
+            else
+                moveSprite(screen, i);
+            long start = threadBean.getCurrentThreadCpuTime();
+            PixelArtScaler.pack(screen, frame);
+            if (scaler.render(frame)) {
+                int from = scaler.getDirtyFrom() * scaler.getOutputWidth();
+                int to   = scaler.getDirtyTo() * scaler.getOutputWidth();
+                System.arraycopy(scaler.getPixels(), from, image, from, to - from);
+            }
+            if (measure)
+                times[i] = threadBean.getCurrentThreadCpuTime() - start;
+        }
+        if (!measure)
+            return 0;
+        Arrays.sort(times);
+        return times[(int) (times.length * 0.99)] / 1e6;
+    }
+
+    private static void check(List<String> overBudget, String scenario, double p99) {
+        if (p99 > FRAME_BUDGET_MILLIS)
+            overBudget.add(String.format("%s %.3f ms", scenario, p99));
+    }
+
+    private static void invert(boolean[][] screen) {
+        for (boolean[] column : screen) {
+            for (int y = 0; y < column.length; ++y)
+                column[y] = !column[y];
+        }
+    }
+
+    private static void moveSprite(boolean[][] screen, int step) {
+        if (step > 0)
+            toggleSprite(screen, step - 1);
+        toggleSprite(screen, step);
+    }
+
+    private static void toggleSprite(boolean[][] screen, int step) {
+        int x = step % EXTENDED_WIDTH;
+        int y = (step / EXTENDED_WIDTH) % (EXTENDED_HEIGHT - SPRITE_HEIGHT);
+        for (int row = 0; row < SPRITE_HEIGHT; ++row) {
+            for (int column = 0; column < 8; ++column) {
+                int px = (x + column) % EXTENDED_WIDTH;
+                screen[px][y + row] = !screen[px][y + row];
+            }
+        }
+    }
+}